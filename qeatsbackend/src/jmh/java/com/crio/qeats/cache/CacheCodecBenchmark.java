@@ -0,0 +1,110 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.utils.BenchmarkFixtures;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding and decoding a cached cell the way RestaurantCache does, with each codec
+ * CacheConfiguration can set up: one record per restaurant and the cell's id list. The size of
+ * the entries of a cell is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheCodecBenchmark {
+
+  @Param({"json", "smile"})
+  private String codec;
+
+  @Param({"10", "100"})
+  private int restaurants;
+
+  private JacksonCacheCodec cacheCodec;
+  private List<Restaurant> cell;
+  private List<byte[]> encodedRecords;
+  private String encodedCell;
+
+  @Setup
+  public void setup() throws IOException {
+    ObjectMapper mapper;
+    if ("smile".equals(codec)) {
+      SmileFactory smileFactory = new SmileFactory();
+      smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+      mapper = new ObjectMapper(smileFactory);
+    } else {
+      mapper = new ObjectMapper();
+    }
+    cacheCodec = new JacksonCacheCodec(mapper);
+    cell = BenchmarkFixtures.restaurants(0, restaurants);
+    encodedRecords = encode();
+    encodedCell = cellEntry().encode(cacheCodec.schemaVersion());
+    int bytes = encodedCell.length();
+    for (byte[] record : encodedRecords) {
+      bytes += record.length;
+    }
+    System.out.printf("%n%s, %d restaurants: %d bytes%n", codec, restaurants, bytes);
+  }
+
+  @Benchmark
+  public List<byte[]> encode() throws IOException {
+    List<byte[]> records = new ArrayList<>(cell.size());
+    for (Restaurant restaurant : cell) {
+      records.add(cacheCodec.encodeRestaurant(restaurant));
+    }
+    return records;
+  }
+
+  @Benchmark
+  public String encodeCellEntry() {
+    return cellEntry().encode(cacheCodec.schemaVersion());
+  }
+
+  @Benchmark
+  public List<Restaurant> decode() throws IOException {
+    List<Restaurant> decoded = new ArrayList<>(encodedRecords.size());
+    for (byte[] record : encodedRecords) {
+      decoded.add(cacheCodec.decodeRestaurant(record));
+    }
+    return decoded;
+  }
+
+  @Benchmark
+  public CellEntry decodeCellEntry() {
+    return CellEntry.decode(encodedCell, cacheCodec.schemaVersion());
+  }
+
+  private CellEntry cellEntry() {
+    List<String> ids = new ArrayList<>(cell.size());
+    for (Restaurant restaurant : cell) {
+      ids.add(restaurant.getRestaurantId());
+    }
+    return new CellEntry(ids, System.currentTimeMillis(), 10);
+  }
+}
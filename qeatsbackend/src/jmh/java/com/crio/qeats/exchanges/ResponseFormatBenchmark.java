@@ -0,0 +1,96 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.exchanges;
+
+import com.crio.qeats.dto.Restaurant;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding and decoding a restaurants response in each format the API negotiates, set up as
+ * in WebConfiguration. The payload size of each is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseFormatBenchmark {
+
+  @Param({"json", "smile", "cbor"})
+  private String format;
+
+  @Param({"10", "100"})
+  private int restaurants;
+
+  private GetRestaurantsResponse response;
+  private ObjectWriter writer;
+  private ObjectReader reader;
+  private byte[] encoded;
+
+  @Setup
+  public void setup() throws IOException {
+    String[] cities = {"Hsr Layout", "Btm Layout", "Koramangala", "Indiranagar"};
+    List<Restaurant> list = new ArrayList<>(restaurants);
+    for (int i = 0; i < restaurants; i++) {
+      list.add(new Restaurant(String.valueOf(i), "restaurant " + i, cities[i % cities.length],
+          "www.google.com", 20.0 + i / 1000.0, 30.0 + i / 1000.0, "18:00", "23:00",
+          new ArrayList<>(Arrays.asList("Tamil", "South Indian"))));
+    }
+    response = new GetRestaurantsResponse(list);
+
+    ObjectMapper mapper = mapper(format);
+    writer = mapper.writerFor(GetRestaurantsResponse.class);
+    reader = mapper.readerFor(GetRestaurantsResponse.class);
+    encoded = writer.writeValueAsBytes(response);
+    System.out.printf("%n%s, %d restaurants: %d bytes%n", format, restaurants, encoded.length);
+  }
+
+  @Benchmark
+  public byte[] encode() throws IOException {
+    return writer.writeValueAsBytes(response);
+  }
+
+  @Benchmark
+  public GetRestaurantsResponse decode() throws IOException {
+    return reader.readValue(encoded);
+  }
+
+  private static ObjectMapper mapper(String format) {
+    switch (format) {
+      case "smile":
+        SmileFactory smileFactory = new SmileFactory();
+        smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        return new ObjectMapper(smileFactory);
+      case "cbor":
+        return new ObjectMapper(new CBORFactory());
+      default:
+        return new ObjectMapper();
+    }
+  }
+}
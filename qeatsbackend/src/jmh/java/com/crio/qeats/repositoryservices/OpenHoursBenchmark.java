@@ -0,0 +1,73 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.utils.BenchmarkFixtures;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Checking which restaurants of a cell are open: parsing their opening hours on every check,
+ * and {@link RestaurantRepositoryServiceImpl#isOpenNow}, which parses each distinct value once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenHoursBenchmark {
+
+  @Param({"10", "100"})
+  private int restaurants;
+
+  private List<Restaurant> cell;
+  private LocalTime time;
+
+  @Setup
+  public void setup() {
+    cell = BenchmarkFixtures.restaurants(0, restaurants);
+    time = LocalTime.of(19, 30);
+  }
+
+  @Benchmark
+  public int parsePerCheck() {
+    int open = 0;
+    for (Restaurant restaurant : cell) {
+      if (time.isAfter(LocalTime.parse(restaurant.getOpensAt()))
+          && time.isBefore(LocalTime.parse(restaurant.getClosesAt()))) {
+        open++;
+      }
+    }
+    return open;
+  }
+
+  @Benchmark
+  public int isOpenNow() {
+    int open = 0;
+    for (Restaurant restaurant : cell) {
+      if (RestaurantRepositoryServiceImpl.isOpenNow(time, restaurant.getOpensAt(),
+          restaurant.getClosesAt())) {
+        open++;
+      }
+    }
+    return open;
+  }
+}
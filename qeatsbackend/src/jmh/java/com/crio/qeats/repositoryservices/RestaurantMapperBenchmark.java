@@ -0,0 +1,89 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.models.RestaurantEntity;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mapping the restaurants of one search: a ModelMapper per call (the former prototype bean),
+ * a shared ModelMapper, and {@link RestaurantMapper}.
+ * Run with -prof gc for the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RestaurantMapperBenchmark {
+
+  @Param({"10", "100"})
+  private int restaurants;
+
+  private List<RestaurantEntity> entities;
+  private ModelMapper sharedModelMapper;
+
+  @Setup
+  public void setup() {
+    entities = new ArrayList<>(restaurants);
+    for (int i = 0; i < restaurants; i++) {
+      RestaurantEntity entity = new RestaurantEntity();
+      entity.setId("5c" + i);
+      entity.setRestaurantId(String.valueOf(i));
+      entity.setName("restaurant " + i);
+      entity.setCity("Hsr Layout");
+      entity.setImageUrl("www.google.com");
+      entity.setLatitude(20.0 + i / 1000.0);
+      entity.setLongitude(30.0);
+      entity.setOpensAt("18:00");
+      entity.setClosesAt("23:00");
+      entity.setAttributes(new ArrayList<>(Arrays.asList("Tamil", "South Indian")));
+      entities.add(entity);
+    }
+    sharedModelMapper = new ModelMapper();
+  }
+
+  @Benchmark
+  public List<Restaurant> modelMapperPerCall() {
+    return map(new ModelMapper());
+  }
+
+  @Benchmark
+  public List<Restaurant> modelMapperShared() {
+    return map(sharedModelMapper);
+  }
+
+  @Benchmark
+  public List<Restaurant> handWritten() {
+    return RestaurantMapper.toRestaurants(entities);
+  }
+
+  private List<Restaurant> map(ModelMapper modelMapper) {
+    List<Restaurant> mapped = new ArrayList<>(entities.size());
+    for (RestaurantEntity entity : entities) {
+      mapped.add(modelMapper.map(entity, Restaurant.class));
+    }
+    return mapped;
+  }
+}
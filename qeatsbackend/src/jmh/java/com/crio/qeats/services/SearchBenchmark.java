@@ -0,0 +1,177 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.services;
+
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.dto.RestaurantFields;
+import com.crio.qeats.exchanges.GetRestaurantsRequest;
+import com.crio.qeats.exchanges.GetRestaurantsResponse;
+import com.crio.qeats.repositoryservices.RestaurantRepositoryService;
+import com.crio.qeats.utils.BenchmarkFixtures;
+import com.crio.qeats.utils.TaskExecutors;
+import java.lang.reflect.Field;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The search of {@link RestaurantServiceImpl}, sequential and multithreaded, over search
+ * sources answering from memory after a simulated round trip, and the merge of their results.
+ *
+ * <p>The sources overlap, so that the merge drops duplicates. With a round trip of a couple of
+ * milliseconds, the multithreaded search is expected to be at least 1.5 times as fast as the
+ * sequential one; without, the scores are the overhead of the fan-out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+  // Restaurants found by each source.
+  @Param({"10", "100"})
+  private int restaurants;
+
+  // Simulated round trip of each source.
+  @Param({"0", "2"})
+  private int latencyMillis;
+
+  private RestaurantServiceImpl restaurantService;
+  private ExecutorService taskExecutor;
+  private GetRestaurantsRequest request;
+  private LocalTime time;
+  private List<List<Restaurant>> sourceResults;
+
+  @Setup
+  public void setup() throws ReflectiveOperationException {
+    InMemorySources sources = new InMemorySources(restaurants, latencyMillis);
+    sourceResults = Arrays.asList(sources.byName, sources.byAttributes, sources.byItemName,
+        sources.byItemAttributes);
+    taskExecutor = TaskExecutors.newExecutor(TaskExecutors.MODE_PLATFORM, 32, "qeats-bench");
+
+    restaurantService = new RestaurantServiceImpl();
+    inject("restaurantRepositoryService", sources);
+    inject("taskExecutor", taskExecutor);
+
+    request = new GetRestaurantsRequest(BenchmarkFixtures.LATITUDE, BenchmarkFixtures.LONGITUDE);
+    request.setSearchFor("restaurant");
+    time = LocalTime.of(19, 30);
+  }
+
+  @TearDown
+  public void tearDown() {
+    taskExecutor.shutdown();
+  }
+
+  @Benchmark
+  public GetRestaurantsResponse sequential() {
+    return restaurantService.findRestaurantsBySearchQuery(request, time);
+  }
+
+  @Benchmark
+  public GetRestaurantsResponse multithreaded() {
+    return restaurantService.findRestaurantsBySearchQueryMt(request, time);
+  }
+
+  @Benchmark
+  public List<Restaurant> mergeDistinct() {
+    return RestaurantServiceImpl.mergeDistinct(sourceResults);
+  }
+
+  // The service's dependencies are field injected.
+  private void inject(String fieldName, Object value) throws ReflectiveOperationException {
+    Field field = RestaurantServiceImpl.class.getDeclaredField(fieldName);
+    field.setAccessible(true);
+    field.set(restaurantService, value);
+  }
+
+  /**
+   * Search sources finding a fixed slice of the fixture restaurants each, by name from the first
+   * and by item attributes from the last overlapping the others.
+   */
+  private static final class InMemorySources implements RestaurantRepositoryService {
+
+    private final List<Restaurant> byName;
+    private final List<Restaurant> byAttributes;
+    private final List<Restaurant> byItemName;
+    private final List<Restaurant> byItemAttributes;
+    private final int latencyMillis;
+
+    InMemorySources(int restaurants, int latencyMillis) {
+      byName = BenchmarkFixtures.restaurants(0, restaurants);
+      byAttributes = BenchmarkFixtures.restaurants(restaurants / 2, restaurants);
+      byItemName = BenchmarkFixtures.restaurants(restaurants, restaurants);
+      byItemAttributes = BenchmarkFixtures.restaurants(restaurants / 4, restaurants);
+      this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public List<Restaurant> findAllRestaurantsCloseBy(Double latitude, Double longitude,
+        LocalTime currentTime, Double servingRadiusInKms) {
+      return answer(byName);
+    }
+
+    @Override
+    public void streamRestaurantsCloseBy(Double latitude, Double longitude,
+        LocalTime currentTime, Double servingRadiusInKms, RestaurantFields fields,
+        Consumer<Restaurant> consumer) {
+      answer(byName).forEach(consumer);
+    }
+
+    @Override
+    public List<Restaurant> findRestaurantsByName(Double latitude, Double longitude,
+        String searchString, LocalTime currentTime, Double servingRadiusInKms) {
+      return answer(byName);
+    }
+
+    @Override
+    public List<Restaurant> findRestaurantsByAttributes(Double latitude, Double longitude,
+        String searchString, LocalTime currentTime, Double servingRadiusInKms) {
+      return answer(byAttributes);
+    }
+
+    @Override
+    public List<Restaurant> findRestaurantsByItemName(Double latitude, Double longitude,
+        String searchString, LocalTime currentTime, Double servingRadiusInKms) {
+      return answer(byItemName);
+    }
+
+    @Override
+    public List<Restaurant> findRestaurantsByItemAttributes(Double latitude, Double longitude,
+        String searchString, LocalTime currentTime, Double servingRadiusInKms) {
+      return answer(byItemAttributes);
+    }
+
+    private List<Restaurant> answer(List<Restaurant> restaurants) {
+      if (latencyMillis > 0) {
+        try {
+          Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return restaurants;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH result files of the JSON format the jmh task writes, run with
+ * {@code ./gradlew jmhCompare -Pjmh.baseline=<results.json>}.
+ *
+ * <p>Lines up each benchmark and parameters of the baseline with the same in the current
+ * results, and prints both scores and the change. Benchmarks run with {@code -prof gc} also get
+ * their allocation per operation compared.
+ */
+public final class BenchmarkComparison {
+
+  // Secondary metric of -prof gc.
+  private static final String ALLOCATION_METRIC = "\u00b7gc.alloc.rate.norm";
+
+  private static final String ROW_FORMAT = "%-72s %12s %12s %8s %12s %12s %s%n";
+
+  private BenchmarkComparison() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: BenchmarkComparison <baseline.json> <current.json>");
+      System.exit(2);
+    }
+    ObjectMapper mapper = new ObjectMapper();
+    Map<String, JsonNode> baseline = byKey(mapper.readTree(new File(args[0])));
+    Map<String, JsonNode> current = byKey(mapper.readTree(new File(args[1])));
+
+    System.out.printf(ROW_FORMAT, "benchmark", "baseline", "current", "change", "base B/op",
+        "curr B/op", "unit");
+    for (Map.Entry<String, JsonNode> result : current.entrySet()) {
+      JsonNode before = baseline.get(result.getKey());
+      JsonNode after = result.getValue();
+      double afterScore = after.path("primaryMetric").path("score").asDouble();
+      String beforeScore = "-";
+      String change = "new";
+      if (before != null) {
+        double score = before.path("primaryMetric").path("score").asDouble();
+        beforeScore = String.format("%.3f", score);
+        change = String.format("%+.1f%%", (afterScore - score) / score * 100);
+      }
+      System.out.printf(ROW_FORMAT, result.getKey(), beforeScore,
+          String.format("%.3f", afterScore), change, allocation(before), allocation(after),
+          after.path("primaryMetric").path("scoreUnit").asText());
+    }
+    for (String key : baseline.keySet()) {
+      if (!current.containsKey(key)) {
+        System.out.printf(ROW_FORMAT, key, "", "-", "not run", "", "", "");
+      }
+    }
+  }
+
+  // Benchmark method, without the package, and its parameters, as in
+  // services.SearchBenchmark.sequential{latencyMillis=2, restaurants=10}.
+  private static Map<String, JsonNode> byKey(JsonNode results) {
+    Map<String, JsonNode> byKey = new LinkedHashMap<>();
+    for (JsonNode result : results) {
+      String key = result.path("benchmark").asText().replace("com.crio.qeats.", "");
+      Map<String, String> params = new TreeMap<>();
+      Iterator<Map.Entry<String, JsonNode>> fields = result.path("params").fields();
+      while (fields.hasNext()) {
+        Map.Entry<String, JsonNode> param = fields.next();
+        params.put(param.getKey(), param.getValue().asText());
+      }
+      byKey.put(params.isEmpty() ? key : key + params, result);
+    }
+    return byKey;
+  }
+
+  private static String allocation(JsonNode result) {
+    JsonNode allocation = result == null ? null
+        : result.path("secondaryMetrics").get(ALLOCATION_METRIC);
+    return allocation == null ? "-" : String.format("%.0f", allocation.path("score").asDouble());
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import com.crio.qeats.dto.Restaurant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In-memory restaurants for the benchmarks, the same on every run.
+ *
+ * <p>They are spread over about 10 kms around {@link #LATITUDE}, {@link #LONGITUDE}, with a mix
+ * of opening hours, so that filters keep some and drop others as they would on a real cell.
+ */
+public final class BenchmarkFixtures {
+
+  public static final double LATITUDE = 20.0;
+  public static final double LONGITUDE = 30.0;
+
+  private static final String[] CITIES = {"Hsr Layout", "Btm Layout", "Koramangala",
+      "Indiranagar"};
+  private static final String[][] HOURS = {{"18:00", "23:00"}, {"11:30", "23:30"},
+      {"07:00", "11:00"}, {"12:00", "15:30"}, {"10:00", "22:00"}};
+  private static final List<List<String>> ATTRIBUTES = Arrays.asList(
+      Arrays.asList("Tamil", "South Indian"), Arrays.asList("North Indian", "Mughlai"),
+      Arrays.asList("Chinese"), Arrays.asList("Italian", "Pizza", "Desserts"));
+
+  private BenchmarkFixtures() {
+  }
+
+  /**
+   * Restaurants with ids firstId, firstId + 1, ...
+   */
+  public static List<Restaurant> restaurants(int firstId, int count) {
+    List<Restaurant> restaurants = new ArrayList<>(count);
+    for (int id = firstId; id < firstId + count; id++) {
+      String[] hours = HOURS[id % HOURS.length];
+      // Up to about 0.09 degrees, or 10 kms, away in each direction.
+      double latitudeOffset = ((id * 37) % 181 - 90) / 1000.0;
+      double longitudeOffset = ((id * 53) % 181 - 90) / 1000.0;
+      restaurants.add(new Restaurant(String.valueOf(id), "restaurant " + id,
+          CITIES[id % CITIES.length], "www.google.com", LATITUDE + latitudeOffset,
+          LONGITUDE + longitudeOffset, hours[0], hours[1],
+          new ArrayList<>(ATTRIBUTES.get(id % ATTRIBUTES.size()))));
+    }
+    return restaurants;
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import com.crio.qeats.dto.Restaurant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link GeoUtils#findDistanceInKm}, computed from a user to each restaurant of a cell as the
+ * filters do. Scores are per distance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoUtilsBenchmark {
+
+  private static final int RESTAURANTS = 100;
+
+  private double latitude;
+  private double longitude;
+  private double[] latitudes;
+  private double[] longitudes;
+
+  @Setup
+  public void setup() {
+    latitude = BenchmarkFixtures.LATITUDE;
+    longitude = BenchmarkFixtures.LONGITUDE;
+    List<Restaurant> restaurants = BenchmarkFixtures.restaurants(0, RESTAURANTS);
+    latitudes = new double[RESTAURANTS];
+    longitudes = new double[RESTAURANTS];
+    for (int i = 0; i < RESTAURANTS; i++) {
+      latitudes[i] = restaurants.get(i).getLatitude();
+      longitudes[i] = restaurants.get(i).getLongitude();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RESTAURANTS)
+  public double findDistanceInKm() {
+    double total = 0;
+    for (int i = 0; i < RESTAURANTS; i++) {
+      total += GeoUtils.findDistanceInKm(latitude, longitude, latitudes[i], longitudes[i]);
+    }
+    return total;
+  }
+}
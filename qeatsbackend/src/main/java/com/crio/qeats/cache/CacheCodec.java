@@ -0,0 +1,30 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.dto.Restaurant;
+import java.io.IOException;
+
+/**
+ * Turns cached restaurant records into the bytes stored in Redis and back.
+ */
+public interface CacheCodec {
+
+  /**
+   * Schema version of the entries this codec writes; older ones are upgraded when decoded.
+   */
+  int schemaVersion();
+
+  byte[] encodeRestaurant(Restaurant restaurant) throws IOException;
+
+  /**
+   * Decodes bytes written by {@link #encodeRestaurant(Restaurant)}.
+   *
+   * @throws IOException if the bytes are not in this codec's format or of a newer schema
+   */
+  Restaurant decodeRestaurant(byte[] bytes) throws IOException;
+}
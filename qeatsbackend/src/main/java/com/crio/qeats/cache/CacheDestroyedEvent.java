@@ -0,0 +1,19 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published after the Redis cache was flushed, so that copies held in this JVM go too.
+ */
+public class CacheDestroyedEvent extends ApplicationEvent {
+
+  public CacheDestroyedEvent(Object source) {
+    super(source);
+  }
+}
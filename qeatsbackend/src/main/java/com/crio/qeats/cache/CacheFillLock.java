@@ -0,0 +1,93 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+/**
+ * Short-lived Redis lock that lets one instance fill a cache key while the others wait for it.
+ *
+ * <p>The lock is a {@code SET lockKey token NX PX ttl}. It expires on its own if the owner dies,
+ * and is only released by the owner (compare-and-delete in Lua).
+ */
+@Component
+public class CacheFillLock {
+
+  private static final String LOCK_PREFIX = "lock:fill:";
+
+  private static final String RELEASE_SCRIPT =
+      "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) "
+          + "else return 0 end";
+
+  @Value("${qeats.cache.fill-lock.ttl-ms:2000}")
+  private long lockTtlMillis;
+
+  @Value("${qeats.cache.fill-lock.wait-ms:300}")
+  private long waitMillis;
+
+  @Value("${qeats.cache.fill-lock.poll-ms:25}")
+  private long pollMillis;
+
+  /**
+   * Tries to take the fill lock for the cache key.
+   *
+   * @return lock token to pass to {@link #release} or null if another instance holds the lock.
+   */
+  public String tryAcquire(Jedis jedis, String cacheKey) {
+    String token = UUID.randomUUID().toString();
+    String reply = jedis.set(LOCK_PREFIX + cacheKey, token, "NX", "PX", lockTtlMillis);
+    return "OK".equals(reply) ? token : null;
+  }
+
+  /**
+   * Releases the fill lock if it is still held with the given token.
+   */
+  public void release(Jedis jedis, String cacheKey, String token) {
+    jedis.eval(RELEASE_SCRIPT, Collections.singletonList(LOCK_PREFIX + cacheKey),
+        Collections.singletonList(token));
+  }
+
+  /**
+   * Queues {@link #release} on a pipeline, after the writes that fill the key.
+   */
+  public void appendRelease(Pipeline pipeline, String cacheKey, String token) {
+    pipeline.eval(RELEASE_SCRIPT, Collections.singletonList(LOCK_PREFIX + cacheKey),
+        Collections.singletonList(token));
+  }
+
+  /**
+   * Polls the reader until it returns a value or the wait budget runs out.
+   *
+   * <p>The reader should borrow a connection for each poll, so that none is kept idle while
+   * waiting.
+   *
+   * @return the value filled by the lock owner or null if it did not show up in time.
+   */
+  public <T> T awaitValue(Supplier<T> reader) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+    while (System.nanoTime() < deadline) {
+      try {
+        Thread.sleep(pollMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+      T value = reader.get();
+      if (value != null) {
+        return value;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.utils.GeoLocation;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+
+/**
+ * Drops what the caches derived from a restaurant when it changes in Mongo.
+ *
+ * <p>That is always the restaurant's record. Cells that already list the restaurant read its
+ * current record, so an edit in place stops there. Cells only need dropping where the
+ * restaurant appears: around the location of an inserted restaurant, or the new location of a
+ * moved one (cells around the old one still list it, but filter it out by distance). Inserts,
+ * moves and deletes then invalidate the near caches of all instances.
+ *
+ * <p>Whether a restaurant moved is told from its cached record; one that is not cached is
+ * taken for an insert. A cell computed from Mongo before the change may still be written after
+ * it, so the same keys are dropped again after a short delay, once per burst of changes.
+ */
+@Component
+@Log4j2
+public class CacheInvalidator {
+
+  @Autowired
+  private RedisCacheAccess redisCacheAccess;
+
+  @Autowired
+  private RestaurantCache restaurantCache;
+
+  @Autowired
+  private NearCache nearCache;
+
+  @Value("${qeats.cache.cell-radius-km:5.0}")
+  private double cellRadiusInKms;
+
+  @Value("${qeats.cache.invalidation.redelete-ms:5000}")
+  private long redeleteMillis;
+
+  private ScheduledExecutorService redeleter;
+
+  // Keys to drop again, to when they are due. A later change postpones a key, so that the
+  // changes of a bulk write drop it again once.
+  private final ConcurrentMap<String, Long> pendingRestaurants = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Long> pendingCells = new ConcurrentHashMap<>();
+
+  @PostConstruct
+  public void init() {
+    redeleter = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("cache-redelete").setDaemon(true).build());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    redeleter.shutdownNow();
+  }
+
+  @EventListener
+  public void onCatalogueChanged(CatalogueChangedEvent event) {
+    List<String> restaurantIds = event.getRestaurantIds();
+    boolean deleted = event.isDeleted();
+    Set<String> cells = deleted ? Collections.emptySet()
+        : redisCacheAccess.execute(jedis -> cellsListingAnew(jedis, event), HashSet::new);
+    log.info("Invalidating {} restaurants and {} cells", restaurantIds.size(), cells.size());
+
+    invalidate(restaurantIds, cells, deleted);
+    if (redeleteMillis > 0) {
+      long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(redeleteMillis);
+      for (String restaurantId : restaurantIds) {
+        pendingRestaurants.merge(restaurantId, due, Math::max);
+      }
+      for (String cell : cells) {
+        pendingCells.merge(cell, due, Math::max);
+      }
+      redeleter.schedule(() -> invalidate(takeDue(pendingRestaurants, restaurantIds, due),
+          takeDue(pendingCells, cells, due), deleted), redeleteMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  // Cells around the restaurants that were inserted or moved, which do not list them yet.
+  private Set<String> cellsListingAnew(Jedis jedis, CatalogueChangedEvent event) {
+    List<Restaurant> cached = restaurantCache.getRestaurants(jedis, event.getRestaurantIds());
+    Set<String> cells = new HashSet<>();
+    for (int i = 0; i < cached.size(); i++) {
+      GeoLocation location = event.getLocations().get(i);
+      Restaurant restaurant = cached.get(i);
+      if (restaurant == null
+          || !Objects.equals(restaurant.getLatitude(), location.getLatitude())
+          || !Objects.equals(restaurant.getLongitude(), location.getLongitude())) {
+        cells.addAll(RestaurantCache.cellsAround(location.getLatitude(),
+            location.getLongitude(), cellRadiusInKms));
+      }
+    }
+    return cells;
+  }
+
+  private void invalidate(Collection<String> restaurantIds, Collection<String> cells,
+      boolean deleted) {
+    if (restaurantIds.isEmpty() && cells.isEmpty()) {
+      return;
+    }
+    redisCacheAccess.run(jedis -> {
+      for (String restaurantId : restaurantIds) {
+        restaurantCache.invalidateRestaurant(jedis, restaurantId);
+      }
+      if (!cells.isEmpty()) {
+        restaurantCache.evictCells(jedis, cells);
+      }
+    });
+    // Near caches hold whole lists, which only change with the restaurants they list.
+    if (deleted || !cells.isEmpty()) {
+      nearCache.bumpGeneration();
+    }
+  }
+
+  // The keys still due at the given time, that no later change postponed.
+  private static List<String> takeDue(ConcurrentMap<String, Long> pending,
+      Collection<String> keys, long due) {
+    List<String> taken = new ArrayList<>();
+    for (String key : keys) {
+      if (pending.remove(key, due)) {
+        taken.add(key);
+      }
+    }
+    return taken;
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Versions of the layout of cached restaurants.
+ *
+ * <p>When {@link com.crio.qeats.dto.Restaurant} changes in a way older entries cannot be read
+ * as, bump {@link #CURRENT_VERSION} and add an upgrade from the previous version. Entries of
+ * the previous version are then upgraded as they are read instead of being flushed on deploy.
+ */
+public final class CacheSchema {
+
+  public static final int CURRENT_VERSION = 1;
+
+  // Oldest version in the fleet; nothing older is looked up or upgraded.
+  public static final int FIRST_VERSION = 1;
+
+  private static final Map<Integer, UnaryOperator<ObjectNode>> UPGRADES;
+
+  static {
+    Map<Integer, UnaryOperator<ObjectNode>> upgrades = new HashMap<>();
+    // None yet, version 1 is the first layout.
+    UPGRADES = Collections.unmodifiableMap(upgrades);
+  }
+
+  private CacheSchema() {
+  }
+
+  /**
+   * Upgrades of one restaurant, by the version they upgrade from to the next one.
+   */
+  public static Map<Integer, UnaryOperator<ObjectNode>> upgrades() {
+    return UPGRADES;
+  }
+}
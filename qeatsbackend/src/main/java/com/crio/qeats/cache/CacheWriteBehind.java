@@ -0,0 +1,140 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.telemetry.PipelineMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Pipeline;
+
+/**
+ * Writes cache entries in the background, so that a request does not wait for them.
+ *
+ * <p>Writes are queued and a single writer thread sends them in batches, one pipeline per
+ * batch; encoding happens on that thread too. The queue is bounded: when Redis cannot keep up,
+ * new writes are dropped rather than queued, and the entries are computed again on a later
+ * miss.
+ */
+@Component
+@Log4j2
+public class CacheWriteBehind {
+
+  /**
+   * Cache writes to send on a pipeline.
+   */
+  @FunctionalInterface
+  public interface PipelinedWrite {
+    void appendTo(Pipeline pipeline) throws IOException;
+  }
+
+  @Autowired
+  private RedisCacheAccess redisCacheAccess;
+
+  // When disabled, writes are sent by the submitting thread.
+  @Value("${qeats.cache.write-behind.enabled:true}")
+  private boolean enabled;
+
+  @Value("${qeats.cache.write-behind.queue-capacity:1024}")
+  private int queueCapacity;
+
+  @Value("${qeats.cache.write-behind.batch-size:64}")
+  private int batchSize;
+
+  private BlockingQueue<PipelinedWrite> queue;
+  private Thread writer;
+  private Counter dropped;
+
+  @PostConstruct
+  public void init() {
+    dropped = Metrics.counter("qeats.cache.write-behind.dropped");
+    if (!enabled) {
+      return;
+    }
+    queue = new ArrayBlockingQueue<>(queueCapacity);
+    Gauge.builder("qeats.cache.write-behind.queued", queue, BlockingQueue::size)
+        .register(Metrics.globalRegistry);
+    writer = new Thread(this::writeLoop, "cache-write-behind");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (writer == null) {
+      return;
+    }
+    writer.interrupt();
+    // Best effort for what is still queued.
+    List<PipelinedWrite> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    if (!remaining.isEmpty()) {
+      send(remaining);
+    }
+  }
+
+  /**
+   * Queues a write.
+   *
+   * @return false if the queue is full and the write was dropped
+   */
+  public boolean submit(PipelinedWrite write) {
+    if (!enabled) {
+      send(Collections.singletonList(write));
+      return true;
+    }
+    if (queue.offer(write)) {
+      return true;
+    }
+    dropped.increment();
+    return false;
+  }
+
+  private void writeLoop() {
+    List<PipelinedWrite> batch = new ArrayList<>(batchSize);
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException e) {
+        return;
+      }
+      queue.drainTo(batch, batchSize - 1);
+      try {
+        send(batch);
+      } catch (RuntimeException e) {
+        log.error("Could not write {} cache entries", batch.size(), e);
+      }
+      batch.clear();
+    }
+  }
+
+  private void send(List<PipelinedWrite> writes) {
+    redisCacheAccess.run(jedis -> {
+      Pipeline pipeline = jedis.pipelined();
+      for (PipelinedWrite write : writes) {
+        try {
+          write.appendTo(pipeline);
+        } catch (IOException e) {
+          log.error("Error encoding restaurants for cache", e);
+        }
+      }
+      PipelineMetrics.timeRedis("write-behind-batch", pipeline::sync);
+    });
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.utils.GeoLocation;
+import java.util.List;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when restaurants are written to Mongo, so that what was cached from them can be
+ * dropped.
+ *
+ * <p>Menus and items are read from Mongo by every search and nothing is cached from them, so
+ * their writes publish nothing.
+ */
+@Getter
+public class CatalogueChangedEvent extends ApplicationEvent {
+
+  // Restaurants the change is about.
+  private final List<String> restaurantIds;
+
+  // Where the changed restaurants are, one per restaurant id.
+  private final List<GeoLocation> locations;
+
+  // Whether the restaurants were deleted rather than saved.
+  private final boolean deleted;
+
+  public CatalogueChangedEvent(Object source, List<String> restaurantIds,
+      List<GeoLocation> locations, boolean deleted) {
+    super(source);
+    this.restaurantIds = restaurantIds;
+    this.locations = locations;
+    this.deleted = deleted;
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * Cached geohash cell: the ids of its restaurants and what it takes to refresh them.
+ *
+ * <p>Stored as {@code schemaVersion;expiresAtMillis;computeMillis;id,id,...}. The Redis TTL
+ * of the key is longer than {@code expiresAtMillis}, so an expired cell can still be served
+ * while it is being recomputed.
+ */
+@Data
+public class CellEntry {
+
+  private static final String FIELD_SEPARATOR = ";";
+  private static final String ID_SEPARATOR = ",";
+
+  private final List<String> restaurantIds;
+
+  // Wall clock time after which the cell is stale.
+  private final long expiresAtMillis;
+
+  // How long computing the cell took, which drives early refreshes.
+  private final long computeMillis;
+
+  public boolean isStale(long nowMillis) {
+    return nowMillis >= expiresAtMillis;
+  }
+
+  public String encode(int schemaVersion) {
+    return schemaVersion + FIELD_SEPARATOR + expiresAtMillis + FIELD_SEPARATOR + computeMillis
+        + FIELD_SEPARATOR + String.join(ID_SEPARATOR, restaurantIds);
+  }
+
+  /**
+   * Parses a value written by {@link #encode(int)}.
+   *
+   * @return the entry, or null if the value is not a cell entry of the given schema version
+   */
+  public static CellEntry decode(String value, int schemaVersion) {
+    String[] fields = value.split(FIELD_SEPARATOR, 4);
+    if (fields.length != 4) {
+      return null;
+    }
+    try {
+      if (Integer.parseInt(fields[0]) != schemaVersion) {
+        return null;
+      }
+      List<String> ids = fields[3].isEmpty()
+          ? new ArrayList<>() : Arrays.asList(fields[3].split(ID_SEPARATOR));
+      return new CellEntry(ids, Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
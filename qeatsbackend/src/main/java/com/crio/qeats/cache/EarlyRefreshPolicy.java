@@ -0,0 +1,44 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Probabilistic early expiration (XFetch).
+ *
+ * <p>A read refreshes the entry ahead of its expiry with a probability that grows as the expiry
+ * gets closer and as the entry gets more expensive to compute:
+ * {@code now - computeTime * beta * ln(random) >= expiry}. Readers of a hot entry spread their
+ * refreshes out before it expires instead of all missing at once after.
+ */
+public class EarlyRefreshPolicy {
+
+  private final double beta;
+
+  /**
+   * Creates a policy.
+   *
+   * @param beta above 1 favours earlier refreshes, below 1 later ones; 0 disables them
+   */
+  public EarlyRefreshPolicy(double beta) {
+    this.beta = beta;
+  }
+
+  public boolean shouldRefresh(CellEntry entry, long nowMillis) {
+    return shouldRefresh(entry, nowMillis, ThreadLocalRandom.current().nextDouble());
+  }
+
+  boolean shouldRefresh(CellEntry entry, long nowMillis, double random) {
+    if (entry.isStale(nowMillis)) {
+      return true;
+    }
+    // random is in [0, 1), so -ln(random) is positive; 1 - random avoids ln(0).
+    double gapMillis = -entry.getComputeMillis() * beta * Math.log(1 - random);
+    return nowMillis + gapMillis >= entry.getExpiresAtMillis();
+  }
+}
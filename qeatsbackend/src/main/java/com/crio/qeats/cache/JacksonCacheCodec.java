@@ -0,0 +1,95 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.dto.Restaurant;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link CacheCodec} on top of a Jackson mapper (JSON, Smile, ...).
+ *
+ * <p>Every entry starts with one byte holding the schema version of the entry. Entries of an
+ * older version are upgraded on read (see {@link CacheSchema}); entries of a newer version,
+ * written by a newer instance during a rolling deploy, are rejected.
+ */
+public class JacksonCacheCodec implements CacheCodec {
+
+  private final ObjectMapper mapper;
+  private final ObjectReader restaurantReader;
+  private final ObjectWriter restaurantWriter;
+  private final int schemaVersion;
+  private final Map<Integer, UnaryOperator<ObjectNode>> upgrades;
+
+  /**
+   * Creates a codec of the current {@link CacheSchema}.
+   *
+   * @param mapper mapper of the wire format
+   */
+  public JacksonCacheCodec(ObjectMapper mapper) {
+    this(mapper, CacheSchema.CURRENT_VERSION, CacheSchema.upgrades());
+  }
+
+  JacksonCacheCodec(ObjectMapper mapper, int schemaVersion,
+      Map<Integer, UnaryOperator<ObjectNode>> upgrades) {
+    this.mapper = mapper;
+    this.restaurantReader = mapper.readerFor(Restaurant.class);
+    this.restaurantWriter = mapper.writerFor(Restaurant.class);
+    this.schemaVersion = schemaVersion;
+    this.upgrades = upgrades;
+  }
+
+  @Override
+  public int schemaVersion() {
+    return schemaVersion;
+  }
+
+  @Override
+  public byte[] encodeRestaurant(Restaurant restaurant) throws IOException {
+    byte[] payload = restaurantWriter.writeValueAsBytes(restaurant);
+    byte[] entry = new byte[payload.length + 1];
+    entry[0] = (byte) schemaVersion;
+    System.arraycopy(payload, 0, entry, 1, payload.length);
+    return entry;
+  }
+
+  @Override
+  public Restaurant decodeRestaurant(byte[] bytes) throws IOException {
+    if (bytes.length < 2) {
+      throw new IOException("Truncated cache entry");
+    }
+    int version = bytes[0] & 0xff;
+    if (version > schemaVersion) {
+      throw new IOException("Cache entry of newer schema version " + version);
+    }
+    if (version < CacheSchema.FIRST_VERSION) {
+      throw new IOException("Unknown cache entry version " + version);
+    }
+    if (version == schemaVersion) {
+      return restaurantReader.readValue(bytes, 1, bytes.length - 1);
+    }
+    JsonNode tree = mapper.readTree(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+    for (int from = version; from < schemaVersion; from++) {
+      UnaryOperator<ObjectNode> upgrade = upgrades.get(from);
+      if (upgrade == null) {
+        throw new IOException("No upgrade of cache entries from schema version " + from);
+      }
+      if (!(tree instanceof ObjectNode)) {
+        throw new IOException("Unexpected cache entry " + tree.getNodeType());
+      }
+      tree = upgrade.apply((ObjectNode) tree);
+    }
+    return restaurantReader.readValue(tree);
+  }
+}
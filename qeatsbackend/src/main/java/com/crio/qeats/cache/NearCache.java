@@ -0,0 +1,185 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.telemetry.CacheOperationEvent;
+import com.crio.qeats.telemetry.PipelineMetrics;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process cache of deserialized restaurant lists, in front of Redis.
+ *
+ * <p>Entries are bounded by the total number of restaurants they hold; Caffeine decides what
+ * to admit and evict. Coherence across instances comes from a generation counter in Redis:
+ * it is bumped on catalogue changes, polled in the background, and entries written under an
+ * older generation are treated as misses. A hit costs no network hop and no deserialization.
+ *
+ * <p>The {@link ResponseCache} checks its entries against the same generation, so it is polled
+ * whenever either cache is enabled.
+ */
+@Component
+@Log4j2
+public class NearCache {
+
+  public static final String GENERATION_KEY = "qeats:cache:generation";
+
+  @Autowired
+  private RedisCacheAccess redisCacheAccess;
+
+  @Value("${qeats.cache.near.enabled:true}")
+  private boolean enabled;
+
+  @Value("${qeats.response-cache.enabled:false}")
+  private boolean responseCacheEnabled;
+
+  @Value("${qeats.cache.near.max-weight:50000}")
+  private long maxWeight;
+
+  @Value("${qeats.cache.near.ttl-seconds:300}")
+  private long ttlSeconds;
+
+  @Value("${qeats.cache.near.generation-poll-ms:500}")
+  private long generationPollMillis;
+
+  private Cache<String, Entry> cache;
+  private ScheduledExecutorService generationPoller;
+  private volatile long generation;
+
+  @PostConstruct
+  public void init() {
+    cache = Caffeine.newBuilder()
+        .maximumWeight(maxWeight)
+        .<String, Entry>weigher((key, entry) -> entry.restaurants.size() + 1)
+        .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(Metrics.globalRegistry, cache, "restaurantsNearCache");
+
+    if (enabled || responseCacheEnabled) {
+      generationPoller = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("near-cache-generation").setDaemon(true)
+              .build());
+      generationPoller.scheduleWithFixedDelay(this::pollGeneration, 0, generationPollMillis,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (generationPoller != null) {
+      generationPoller.shutdownNow();
+    }
+  }
+
+  /**
+   * Generation to pass to {@link #put}, read before the value to cache is looked up.
+   */
+  public long currentGeneration() {
+    return generation;
+  }
+
+  /**
+   * Looks up a cached list.
+   *
+   * @return the cached list, unmodifiable, or null on a miss
+   */
+  public List<Restaurant> get(String key) {
+    if (!enabled) {
+      return null;
+    }
+    CacheOperationEvent event = new CacheOperationEvent();
+    Entry entry = cache.getIfPresent(key);
+    if (entry != null && entry.generation != generation) {
+      cache.invalidate(key);
+      entry = null;
+    }
+    // Unlike Caffeine's own stats, entries of an older generation count as misses.
+    int hits = entry == null ? 0 : 1;
+    PipelineMetrics.recordCacheLookups("near", hits, 1 - hits);
+    List<Restaurant> restaurants = entry == null ? null : entry.restaurants;
+    event.finish("near.get", key, hits, 1 - hits);
+    return restaurants;
+  }
+
+  /**
+   * Caches a list read or computed under the given generation.
+   */
+  public void put(String key, long generation, List<Restaurant> restaurants) {
+    if (!enabled || generation != this.generation) {
+      return;
+    }
+    cache.put(key, new Entry(generation,
+        Collections.unmodifiableList(new ArrayList<>(restaurants))));
+  }
+
+  /**
+   * Invalidates the near caches of all instances, after a catalogue change.
+   */
+  public void bumpGeneration() {
+    Long latest = redisCacheAccess.execute(jedis -> jedis.incr(GENERATION_KEY), () -> null);
+    if (latest != null) {
+      onGeneration(latest);
+    } else {
+      log.warn("Could not bump the near cache generation");
+      cache.invalidateAll();
+    }
+  }
+
+  @EventListener
+  public void onCacheDestroyed(CacheDestroyedEvent event) {
+    cache.invalidateAll();
+  }
+
+  void pollGeneration() {
+    try {
+      Long latest = redisCacheAccess.execute(jedis -> {
+        String value = jedis.get(GENERATION_KEY);
+        return value == null ? 0L : Long.parseLong(value);
+      }, () -> null);
+      if (latest != null) {
+        onGeneration(latest);
+      }
+    } catch (NumberFormatException e) {
+      log.debug("Could not read the near cache generation", e);
+    }
+  }
+
+  private void onGeneration(long latest) {
+    if (latest != generation) {
+      generation = latest;
+      cache.invalidateAll();
+    }
+  }
+
+  private static class Entry {
+    private final long generation;
+    private final List<Restaurant> restaurants;
+
+    Entry(long generation, List<Restaurant> restaurants) {
+      this.generation = generation;
+      this.restaurants = restaurants;
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.configs.DeadlineAwareJedisPool;
+import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.configs.RedisPoolTimeoutException;
+import com.crio.qeats.utils.CircuitBreaker;
+import com.crio.qeats.utils.RequestContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * The one way into Redis for cache operations.
+ *
+ * <p>Operations run behind a circuit breaker. Connection failures and timeouts count towards
+ * opening it. Failing to borrow a connection in time from a busy pool does not, nor does timing
+ * out on what was left of a request's latency budget. While it is open, operations are not
+ * attempted and the caller's fallback is used right away, so a Redis outage degrades the
+ * service to running without a cache.
+ */
+@Component
+@Log4j2
+public class RedisCacheAccess {
+
+  @Autowired
+  private RedisConfiguration redisConfiguration;
+
+  @Value("${qeats.redis.breaker.failure-threshold:5}")
+  private int failureThreshold;
+
+  @Value("${qeats.redis.breaker.open-ms:5000}")
+  private long openMillis;
+
+  private CircuitBreaker circuitBreaker;
+  private Counter fallbacks;
+
+  @PostConstruct
+  public void init() {
+    circuitBreaker = new CircuitBreaker(failureThreshold, openMillis);
+    fallbacks = Metrics.counter("qeats.redis.fallbacks");
+    Gauge.builder("qeats.redis.breaker.open", circuitBreaker,
+        breaker -> breaker.getState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+        .register(Metrics.globalRegistry);
+    Gauge.builder("qeats.redis.pool.active", redisConfiguration,
+        config -> poolStat(config, JedisPool::getNumActive)).register(Metrics.globalRegistry);
+    Gauge.builder("qeats.redis.pool.idle", redisConfiguration,
+        config -> poolStat(config, JedisPool::getNumIdle)).register(Metrics.globalRegistry);
+    Gauge.builder("qeats.redis.pool.waiters", redisConfiguration,
+        config -> poolStat(config, JedisPool::getNumWaiters)).register(Metrics.globalRegistry);
+  }
+
+  /**
+   * Runs an operation on a pooled connection.
+   *
+   * @param operation what to do with the connection
+   * @param fallback value to use if Redis is unavailable or the operation fails
+   * @return what the operation or the fallback returned
+   */
+  public <T> T execute(Function<Jedis, T> operation, Supplier<T> fallback) {
+    // A request out of time gets nothing from Redis, and it is not Redis' fault.
+    if (RequestContext.isExpired() || !circuitBreaker.tryAcquire()) {
+      fallbacks.increment();
+      return fallback.get();
+    }
+    JedisPool pool = redisConfiguration.getJedisPool();
+    if (pool == null) {
+      circuitBreaker.onFailure();
+      fallbacks.increment();
+      return fallback.get();
+    }
+
+    int soTimeoutMillis = -1;
+    try (Jedis jedis = pool.getResource()) {
+      soTimeoutMillis = jedis.getClient().getSoTimeout();
+      T result = operation.apply(jedis);
+      circuitBreaker.onSuccess();
+      return result;
+    } catch (RedisPoolTimeoutException e) {
+      // Local congestion: Redis was never asked.
+      circuitBreaker.onNotAttempted();
+      log.debug("No Redis connection in time ({})", e.getMessage());
+      fallbacks.increment();
+      return fallback.get();
+    } catch (JedisConnectionException e) {
+      if (RequestContext.isExpired() || isShortened(pool, soTimeoutMillis)) {
+        // Cut short by the request's deadline, which says nothing about Redis.
+        circuitBreaker.onNotAttempted();
+        log.debug("Redis operation out of request time ({})", e.getMessage());
+        fallbacks.increment();
+        return fallback.get();
+      }
+      circuitBreaker.onFailure();
+      log.warn("Redis unavailable ({}), breaker {}", e.getMessage(), circuitBreaker.getState());
+      fallbacks.increment();
+      return fallback.get();
+    } catch (JedisException e) {
+      // Redis answered, with an error.
+      circuitBreaker.onSuccess();
+      log.warn("Redis operation failed", e);
+      fallbacks.increment();
+      return fallback.get();
+    } catch (RuntimeException | Error e) {
+      circuitBreaker.onSuccess();
+      throw e;
+    }
+  }
+
+  /**
+   * Runs an operation whose failure the caller can ignore.
+   */
+  public void run(Consumer<Jedis> operation) {
+    execute(jedis -> {
+      operation.accept(jedis);
+      return null;
+    }, () -> null);
+  }
+
+  public CircuitBreaker.State getBreakerState() {
+    return circuitBreaker.getState();
+  }
+
+  // Below the pool's own read timeout (0 for none), the timeout was lowered to the request's
+  // remaining time.
+  private static boolean isShortened(JedisPool pool, int soTimeoutMillis) {
+    if (!(pool instanceof DeadlineAwareJedisPool) || soTimeoutMillis <= 0) {
+      return false;
+    }
+    int poolSoTimeoutMillis = ((DeadlineAwareJedisPool) pool).getSoTimeoutMillis();
+    return poolSoTimeoutMillis == 0 || soTimeoutMillis < poolSoTimeoutMillis;
+  }
+
+  private static double poolStat(RedisConfiguration config, Function<JedisPool, Integer> stat) {
+    JedisPool pool = config.getCurrentJedisPool();
+    return pool == null ? 0 : stat.apply(pool);
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.PostConstruct;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process cache of serialized restaurants responses, ready to be written out as they are.
+ *
+ * <p>Entries hold the body, its gzipped form when that is smaller, and a strong ETag. Like the
+ * {@link NearCache}, entries written under an older generation are misses, so catalogue changes
+ * on any instance reach this cache too.
+ */
+@Component
+public class ResponseCache {
+
+  @Autowired
+  private NearCache nearCache;
+
+  @Value("${qeats.response-cache.max-bytes:67108864}")
+  private long maxBytes;
+
+  // Responses are cached per time slot of this length.
+  @Value("${qeats.response-cache.slot-minutes:1}")
+  private int slotMinutes;
+
+  // Smaller bodies are not worth gzipping.
+  @Value("${qeats.response-cache.gzip-min-bytes:512}")
+  private int gzipMinBytes;
+
+  private Cache<String, CachedResponse> cache;
+
+  @PostConstruct
+  public void init() {
+    cache = Caffeine.newBuilder()
+        .maximumWeight(maxBytes)
+        .<String, CachedResponse>weigher((key, response) -> response.weight())
+        .expireAfterWrite(slotMinutes, TimeUnit.MINUTES)
+        .recordStats()
+        .build();
+    CaffeineCacheMetrics.monitor(Metrics.globalRegistry, cache, "restaurantsResponseCache");
+  }
+
+  public int getSlotMinutes() {
+    return slotMinutes;
+  }
+
+  /**
+   * Generation to pass to {@link #put}, read before the response is computed.
+   */
+  public long currentGeneration() {
+    return nearCache.currentGeneration();
+  }
+
+  /**
+   * Looks up a response.
+   *
+   * @return the response or null on a miss
+   */
+  public CachedResponse get(String key) {
+    CachedResponse response = cache.getIfPresent(key);
+    if (response == null) {
+      return null;
+    }
+    if (response.generation != currentGeneration()) {
+      cache.invalidate(key);
+      return null;
+    }
+    return response;
+  }
+
+  /**
+   * Caches a response computed under the given generation.
+   *
+   * @return the cached response, to write out
+   */
+  public CachedResponse put(String key, long generation, byte[] body, String contentType) {
+    CachedResponse response = new CachedResponse(generation, body, gzip(body), contentType);
+    if (generation == currentGeneration()) {
+      cache.put(key, response);
+    }
+    return response;
+  }
+
+  @EventListener
+  public void onCatalogueChanged(CatalogueChangedEvent event) {
+    cache.invalidateAll();
+  }
+
+  @EventListener
+  public void onCacheDestroyed(CacheDestroyedEvent event) {
+    cache.invalidateAll();
+  }
+
+  private byte[] gzip(byte[] body) {
+    if (body.length < gzipMinBytes) {
+      return null;
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(body);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.size() < body.length ? out.toByteArray() : null;
+  }
+
+  /**
+   * A serialized response.
+   */
+  @Getter
+  public static final class CachedResponse {
+
+    private final long generation;
+    private final byte[] body;
+
+    // Null when gzip would not make the body smaller.
+    private final byte[] gzippedBody;
+
+    private final String contentType;
+
+    // Strong ETag of the body; the gzipped body has its own.
+    private final String etag;
+    private final String gzipEtag;
+
+    CachedResponse(long generation, byte[] body, byte[] gzippedBody, String contentType) {
+      this.generation = generation;
+      this.body = body;
+      this.gzippedBody = gzippedBody;
+      this.contentType = contentType;
+      String hash = Hashing.murmur3_128().hashBytes(body).toString();
+      this.etag = "\"" + hash + "\"";
+      this.gzipEtag = "\"" + hash + "-gzip\"";
+    }
+
+    private int weight() {
+      return body.length + (gzippedBody == null ? 0 : gzippedBody.length);
+    }
+  }
+}
@@ -0,0 +1,311 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import com.crio.qeats.configs.RedisConfiguration;
+import ch.hsr.geohash.GeoHash;
+import ch.hsr.geohash.WGS84Point;
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.telemetry.CacheOperationEvent;
+import com.crio.qeats.telemetry.PipelineMetrics;
+import com.crio.qeats.utils.GeoUtils;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+/**
+ * Normalized layout of the restaurants cache in Redis.
+ *
+ * <p>Each restaurant is stored once under {@code restaurant:v<version>:<restaurantId>}. A
+ * geohash cell, under {@code cell:v<version>:<geohash>}, only holds the ids of the restaurants
+ * around it (see {@link CellEntry}), so a restaurant shared by overlapping cells is not copied
+ * into each of them, and invalidating it touches one key.
+ *
+ * <p>Keys carry the {@link CacheSchema} version, so that during a rolling deploy instances of
+ * different versions miss each other's entries instead of misreading or overwriting them. A
+ * record missing under the current version is looked up under the previous one and upgraded,
+ * so a deploy does not start from an empty cache. Cells are cheap id lists and are recomputed.
+ */
+@Component
+@Log4j2
+public class RestaurantCache {
+
+  // Geohash precision of cell keys.
+  public static final int CELL_PRECISION = 7;
+
+  public static final String RESTAURANT_KEY_PREFIX =
+      restaurantKeyPrefix(CacheSchema.CURRENT_VERSION);
+
+  @Autowired
+  private CacheCodec cacheCodec;
+
+  // How long a cell is fresh.
+  @Value("${qeats.cache.ttl-seconds:" + RedisConfiguration.REDIS_ENTRY_EXPIRY_IN_SECONDS + "}")
+  private int ttlSeconds;
+
+  // How long past that a stale cell may still be served while it is refreshed.
+  @Value("${qeats.cache.stale-seconds:300}")
+  private int staleSeconds;
+
+  /**
+   * Redis key of a cell under the current schema version.
+   *
+   * @param cell geohash of the cell
+   */
+  public String cellKey(String cell) {
+    return "cell:v" + cacheCodec.schemaVersion() + ":" + cell;
+  }
+
+  /**
+   * Reads a cell.
+   *
+   * @param cell geohash of the cell
+   * @return the cell, possibly stale, or null if it is not cached
+   */
+  public CellEntry getCell(Jedis jedis, String cell) {
+    CacheOperationEvent event = new CacheOperationEvent();
+    String value = PipelineMetrics.timeRedis("get-cell", () -> jedis.get(cellKey(cell)));
+    int hits = value == null ? 0 : 1;
+    PipelineMetrics.recordCacheLookups("cell", hits, 1 - hits);
+    event.finish("redis.get-cell", cell, hits, 1 - hits);
+    return value == null ? null : CellEntry.decode(value, cacheCodec.schemaVersion());
+  }
+
+  /**
+   * Reads restaurant records with one MGET.
+   *
+   * @return one element per id, null where the record is not cached or cannot be decoded
+   */
+  public List<Restaurant> getRestaurants(Jedis jedis, List<String> restaurantIds) {
+    if (restaurantIds.isEmpty()) {
+      return new ArrayList<>();
+    }
+    CacheOperationEvent event = new CacheOperationEvent();
+    List<byte[]> values = PipelineMetrics.timeRedis("mget-restaurants",
+        () -> jedis.mget(restaurantKeys(cacheCodec.schemaVersion(), restaurantIds)));
+    List<Restaurant> restaurants = new ArrayList<>(values.size());
+    List<Integer> missing = new ArrayList<>();
+    for (int i = 0; i < values.size(); i++) {
+      Restaurant restaurant = decode(restaurantIds.get(i), values.get(i));
+      restaurants.add(restaurant);
+      if (restaurant == null) {
+        missing.add(i);
+      }
+    }
+    PipelineMetrics.recordCacheLookups("restaurant", values.size() - missing.size(),
+        missing.size());
+    if (!missing.isEmpty() && cacheCodec.schemaVersion() > CacheSchema.FIRST_VERSION) {
+      upgradePrevious(jedis, restaurantIds, missing, restaurants);
+    }
+    event.finish("redis.get-restaurants", restaurantIds.get(0),
+        values.size() - missing.size(), missing.size());
+    return restaurants;
+  }
+
+  /**
+   * Writes the restaurants of a cell and then the cell's id list, in one pipeline.
+   *
+   * @param cell geohash of the cell
+   * @param computeMillis how long computing the cell took
+   */
+  public void putCell(Jedis jedis, String cell, List<Restaurant> restaurants,
+      long computeMillis) throws IOException {
+    CacheOperationEvent event = new CacheOperationEvent();
+    Pipeline pipeline = jedis.pipelined();
+    appendCell(pipeline, cell, restaurants, computeMillis);
+    PipelineMetrics.timeRedis("put-cell", pipeline::sync);
+    event.finish("redis.put-cell", cell, 0, 0);
+  }
+
+  /**
+   * Queues the writes of {@link #putCell} on a pipeline the caller syncs.
+   */
+  public void appendCell(Pipeline pipeline, String cell, List<Restaurant> restaurants,
+      long computeMillis) throws IOException {
+    List<String> ids = new ArrayList<>(restaurants.size());
+    for (Restaurant restaurant : restaurants) {
+      ids.add(restaurant.getRestaurantId());
+    }
+    appendRestaurants(pipeline, restaurants);
+    CellEntry entry = new CellEntry(ids,
+        System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttlSeconds), computeMillis);
+    pipeline.setex(cellKey(cell), expirySeconds(), entry.encode(cacheCodec.schemaVersion()));
+  }
+
+  /**
+   * Writes restaurant records in one pipeline.
+   */
+  public void putRestaurants(Jedis jedis, List<Restaurant> restaurants) throws IOException {
+    if (restaurants.isEmpty()) {
+      return;
+    }
+    CacheOperationEvent event = new CacheOperationEvent();
+    Pipeline pipeline = jedis.pipelined();
+    appendRestaurants(pipeline, restaurants);
+    PipelineMetrics.timeRedis("put-restaurants", pipeline::sync);
+    event.finish("redis.put-restaurants", restaurants.get(0).getRestaurantId(), 0, 0);
+  }
+
+  /**
+   * Queues the writes of {@link #putRestaurants} on a pipeline the caller syncs.
+   */
+  public void appendRestaurants(Pipeline pipeline, List<Restaurant> restaurants)
+      throws IOException {
+    for (Restaurant restaurant : restaurants) {
+      pipeline.setex(restaurantKey(restaurant.getRestaurantId()), expirySeconds(),
+          cacheCodec.encodeRestaurant(restaurant));
+    }
+  }
+
+  /**
+   * Drops the cached record of one restaurant; cells referencing it reload it on next read.
+   *
+   * <p>During a rolling deploy the fleet runs this version and the one before or after it, so
+   * the records of all three are dropped.
+   */
+  public void invalidateRestaurant(Jedis jedis, String restaurantId) {
+    int version = cacheCodec.schemaVersion();
+    int oldest = Math.max(CacheSchema.FIRST_VERSION, version - 1);
+    byte[][] keys = new byte[version + 2 - oldest][];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = restaurantKey(oldest + i, restaurantId);
+    }
+    jedis.del(keys);
+  }
+
+  /**
+   * Drops cached cells, to be recomputed on next read.
+   *
+   * @param cells geohashes of the cells
+   */
+  public void evictCells(Jedis jedis, Collection<String> cells) {
+    if (!cells.isEmpty()) {
+      jedis.del(cells.stream().map(this::cellKey).toArray(String[]::new));
+    }
+  }
+
+  /**
+   * How much farther than the serving radius a cell looks for candidates: any point of the
+   * cell is at most half its diagonal away from its center.
+   */
+  public static double cellSlackInKms(GeoHash cell) {
+    WGS84Point center = cell.getBoundingBoxCenterPoint();
+    WGS84Point corner = cell.getBoundingBox().getUpperLeft();
+    return GeoUtils.findDistanceInKm(center.getLatitude(), center.getLongitude(),
+        corner.getLatitude(), corner.getLongitude());
+  }
+
+  /**
+   * Cells that list a restaurant at the given point among their candidates.
+   *
+   * @param cellRadiusInKms the radius cells are computed for
+   * @return keys of the cells
+   */
+  public static Set<String> cellsAround(double latitude, double longitude,
+      double cellRadiusInKms) {
+    // The cells form a disk around the point, walk it outwards from the point's own cell.
+    GeoHash start = GeoHash.withCharacterPrecision(latitude, longitude, CELL_PRECISION);
+    Set<String> seen = new HashSet<>();
+    Deque<GeoHash> pending = new ArrayDeque<>();
+    seen.add(start.toBase32());
+    pending.add(start);
+
+    Set<String> cells = new HashSet<>();
+    while (!pending.isEmpty()) {
+      GeoHash cell = pending.poll();
+      WGS84Point center = cell.getBoundingBoxCenterPoint();
+      if (GeoUtils.findDistanceInKm(center.getLatitude(), center.getLongitude(), latitude,
+          longitude) >= cellRadiusInKms + cellSlackInKms(cell)) {
+        continue;
+      }
+      cells.add(cell.toBase32());
+      for (GeoHash neighbour : cell.getAdjacent()) {
+        if (seen.add(neighbour.toBase32())) {
+          pending.add(neighbour);
+        }
+      }
+    }
+    return cells;
+  }
+
+  // Copies the records still cached by the previous version over, upgraded.
+  private void upgradePrevious(Jedis jedis, List<String> restaurantIds, List<Integer> missing,
+      List<Restaurant> restaurants) {
+    List<String> missingIds = new ArrayList<>(missing.size());
+    for (int i : missing) {
+      missingIds.add(restaurantIds.get(i));
+    }
+    List<byte[]> values = PipelineMetrics.timeRedis("mget-previous-version",
+        () -> jedis.mget(restaurantKeys(cacheCodec.schemaVersion() - 1, missingIds)));
+    List<Restaurant> upgraded = new ArrayList<>();
+    for (int i = 0; i < values.size(); i++) {
+      Restaurant restaurant = decode(missingIds.get(i), values.get(i));
+      if (restaurant != null) {
+        restaurants.set(missing.get(i), restaurant);
+        upgraded.add(restaurant);
+      }
+    }
+    if (upgraded.isEmpty()) {
+      return;
+    }
+    try {
+      putRestaurants(jedis, upgraded);
+    } catch (IOException e) {
+      log.warn("Could not write {} upgraded restaurants", upgraded.size(), e);
+    }
+  }
+
+  private Restaurant decode(String restaurantId, byte[] value) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return cacheCodec.decodeRestaurant(value);
+    } catch (IOException e) {
+      log.warn("Could not decode cached restaurant {}, reloading it", restaurantId, e);
+      return null;
+    }
+  }
+
+  // Records live as long as the cells that reference them, stale window included.
+  private int expirySeconds() {
+    return ttlSeconds + staleSeconds;
+  }
+
+  private byte[] restaurantKey(String restaurantId) {
+    return restaurantKey(cacheCodec.schemaVersion(), restaurantId);
+  }
+
+  private static byte[][] restaurantKeys(int schemaVersion, List<String> restaurantIds) {
+    byte[][] keys = new byte[restaurantIds.size()][];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = restaurantKey(schemaVersion, restaurantIds.get(i));
+    }
+    return keys;
+  }
+
+  private static byte[] restaurantKey(int schemaVersion, String restaurantId) {
+    return (restaurantKeyPrefix(schemaVersion) + restaurantId).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String restaurantKeyPrefix(int schemaVersion) {
+    return "restaurant:v" + schemaVersion + ":";
+  }
+}
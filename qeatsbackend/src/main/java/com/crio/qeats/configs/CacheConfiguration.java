@@ -0,0 +1,59 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import com.crio.qeats.cache.CacheCodec;
+import com.crio.qeats.cache.EarlyRefreshPolicy;
+import com.crio.qeats.cache.JacksonCacheCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CacheConfiguration {
+
+  public static final String CODEC_SMILE = "smile";
+  public static final String CODEC_JSON = "json";
+
+  @Value("${qeats.cache.codec:smile}")
+  private String codec;
+
+  @Value("${qeats.cache.early-refresh-beta:1.0}")
+  private double earlyRefreshBeta;
+
+  /**
+   * Codec of the restaurants cached in Redis.
+   * TIP: Set qeats.cache.codec=json to inspect entries with redis-cli.
+   *
+   * @return CacheCodec
+   */
+  @Bean
+  public CacheCodec cacheCodec() {
+    if (CODEC_JSON.equalsIgnoreCase(codec)) {
+      return new JacksonCacheCodec(new ObjectMapper());
+    }
+    // Back-references for repeated short strings (cities, cuisines) on top of the
+    // back-references for field names Smile uses by default.
+    SmileFactory smileFactory = new SmileFactory();
+    smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+    return new JacksonCacheCodec(new ObjectMapper(smileFactory));
+  }
+
+  /**
+   * When reads refresh cached cells ahead of their expiry.
+   * TIP: Set qeats.cache.early-refresh-beta=0 to only refresh cells once they are stale.
+   *
+   * @return EarlyRefreshPolicy
+   */
+  @Bean
+  public EarlyRefreshPolicy earlyRefreshPolicy() {
+    return new EarlyRefreshPolicy(earlyRefreshBeta);
+  }
+}
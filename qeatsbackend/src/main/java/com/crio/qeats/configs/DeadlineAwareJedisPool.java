@@ -0,0 +1,101 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import com.crio.qeats.utils.RequestContext;
+import java.util.NoSuchElementException;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * {@link JedisPool} that applies the current request's remaining latency budget to both the
+ * time spent waiting for a connection and the socket read timeout of the borrowed connection,
+ * on top of the pool's own limits.
+ *
+ * <p>Outside a request, or for requests without a deadline, it behaves like a plain pool.
+ * Either way, running out of time to borrow throws {@link RedisPoolTimeoutException}.
+ */
+public class DeadlineAwareJedisPool extends JedisPool {
+
+  private final int soTimeoutMillis;
+
+  public DeadlineAwareJedisPool(JedisPoolConfig poolConfig, String host, int port,
+      int connectionTimeoutMillis, int soTimeoutMillis) {
+    super(poolConfig, host, port, connectionTimeoutMillis, soTimeoutMillis, null,
+        Protocol.DEFAULT_DATABASE, null, false, null, null, null);
+    this.soTimeoutMillis = soTimeoutMillis;
+  }
+
+  @Override
+  public Jedis getResource() {
+    if (!RequestContext.hasDeadline()) {
+      try {
+        return super.getResource();
+      } catch (JedisException e) {
+        if (isPoolTimeout(e.getCause())) {
+          throw new RedisPoolTimeoutException("Could not get a resource from the pool", e);
+        }
+        throw e;
+      }
+    }
+
+    long remainingMillis = RequestContext.remainingMillis();
+    if (remainingMillis <= 0) {
+      throw new RedisPoolTimeoutException("Request deadline exceeded before borrowing");
+    }
+
+    Jedis jedis;
+    try {
+      long maxWaitMillis = internalPool.getMaxWaitMillis();
+      jedis = internalPool.borrowObject(
+          maxWaitMillis < 0 ? remainingMillis : Math.min(remainingMillis, maxWaitMillis));
+    } catch (Exception e) {
+      if (isPoolTimeout(e)) {
+        throw new RedisPoolTimeoutException("Could not get a resource within the deadline", e);
+      }
+      throw new JedisConnectionException("Could not get a resource within the deadline", e);
+    }
+    jedis.setDataSource(this);
+
+    int budget = (int) Math.min(remainingMillis, soTimeoutMillis > 0 ? soTimeoutMillis
+        : Integer.MAX_VALUE);
+    applySoTimeout(jedis, budget);
+    return jedis;
+  }
+
+  public int getSoTimeoutMillis() {
+    return soTimeoutMillis;
+  }
+
+  // Deprecated in Jedis 2.9, but close() still returns connections through it.
+  @Override
+  @SuppressWarnings("deprecation")
+  public void returnResource(Jedis resource) {
+    // Connections go back with the pool-wide timeout, whatever the last borrower set.
+    if (resource != null && resource.getClient().getSoTimeout() != soTimeoutMillis) {
+      applySoTimeout(resource, soTimeoutMillis);
+    }
+    super.returnResource(resource);
+  }
+
+  // The pool throws NoSuchElementException without a cause when the wait ran out; with one, it
+  // could not make or validate a connection, which is Redis' doing.
+  private static boolean isPoolTimeout(Throwable e) {
+    return e instanceof NoSuchElementException && e.getCause() == null;
+  }
+
+  private static void applySoTimeout(Jedis jedis, int soTimeoutMillis) {
+    jedis.getClient().setSoTimeout(soTimeoutMillis);
+    if (jedis.getClient().isConnected()) {
+      jedis.getClient().rollbackTimeout();
+    }
+  }
+}
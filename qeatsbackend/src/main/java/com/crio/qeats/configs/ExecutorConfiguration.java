@@ -0,0 +1,81 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import com.crio.qeats.telemetry.PipelineMetrics;
+import com.crio.qeats.utils.TaskExecutors;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.concurrent.ExecutorService;
+import lombok.extern.log4j.Log4j2;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@Log4j2
+public class ExecutorConfiguration {
+
+  public static final String TASK_EXECUTOR = "qeatsTaskExecutor";
+
+  @Value("${qeats.executor.mode:platform}")
+  private String executorMode;
+
+  @Value("${qeats.executor.pool-size:32}")
+  private int poolSize;
+
+  /**
+   * Executor for blocking work such as the search fan-out.
+   * TIP: Set qeats.executor.mode=virtual to run one virtual thread per task on a Loom JDK.
+   * Its pool, run times and queue waits are exported as executor.* and qeats.executor.* metrics.
+   *
+   * @return ExecutorService
+   */
+  @Bean(name = TASK_EXECUTOR, destroyMethod = "shutdown")
+  public ExecutorService qeatsTaskExecutor() {
+    if (TaskExecutors.MODE_VIRTUAL.equalsIgnoreCase(executorMode)
+        && !TaskExecutors.isVirtualThreadSupported()) {
+      log.warn("Virtual threads are not supported on this JDK, using a platform thread pool");
+    }
+    ExecutorService executor = TaskExecutors.newExecutor(executorMode, poolSize, "qeats-task");
+    return PipelineMetrics.timeQueueWait(
+        ExecutorServiceMetrics.monitor(Metrics.globalRegistry, executor, TASK_EXECUTOR),
+        TASK_EXECUTOR);
+  }
+
+  /**
+   * Runs Tomcat request handling on the same executor, so that a request blocked on Mongo or
+   * Redis does not hold a container thread.
+   * Only applied with virtual threads: a bounded platform pool shared between requests and
+   * their fan-out tasks could deadlock.
+   *
+   * @param executor executor built by {@link #qeatsTaskExecutor()}
+   * @return customizer for the embedded Tomcat
+   */
+  @Bean
+  @ConditionalOnProperty(name = "qeats.executor.request-handling", havingValue = "true")
+  public WebServerFactoryCustomizer<TomcatServletWebServerFactory> requestHandlingExecutor(
+      @Qualifier(TASK_EXECUTOR) ExecutorService executor) {
+    if (!TaskExecutors.MODE_VIRTUAL.equalsIgnoreCase(executorMode)
+        || !TaskExecutors.isVirtualThreadSupported()) {
+      log.warn("qeats.executor.request-handling needs virtual threads, keeping Tomcat's pool");
+      return factory -> { };
+    }
+    return factory -> factory.addConnectorCustomizers(connector -> {
+      ProtocolHandler protocolHandler = connector.getProtocolHandler();
+      if (protocolHandler instanceof AbstractProtocol) {
+        ((AbstractProtocol<?>) protocolHandler).setExecutor(executor);
+      }
+    });
+  }
+}
@@ -0,0 +1,27 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import com.crio.qeats.telemetry.MongoCommandMonitor;
+import com.mongodb.MongoClientOptions;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MongoConfiguration {
+
+  /**
+   * Options of the Mongo client Spring Boot creates; the ones in the URI still apply on top.
+   *
+   * @param mongoCommandMonitor listener timing and explaining the commands sent
+   * @return MongoClientOptions
+   */
+  @Bean
+  public MongoClientOptions mongoClientOptions(MongoCommandMonitor mongoCommandMonitor) {
+    return MongoClientOptions.builder().addCommandListener(mongoCommandMonitor).build();
+  }
+}
@@ -1,12 +1,17 @@
 package com.crio.qeats.configs;
 
+import com.crio.qeats.cache.CacheDestroyedEvent;
 import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Protocol;
 
 
 @Component
@@ -22,23 +27,77 @@ public class RedisConfiguration {
 
 
   private int redisPort;
-  private JedisPool jedisPool;
+  private volatile JedisPool jedisPool;
 
+  // Guards pool creation and destruction. A ReentrantLock rather than synchronized, so that
+  // virtual threads waiting here park instead of pinning their carrier thread.
+  private final ReentrantLock poolLock = new ReentrantLock();
+
+  @Autowired(required = false)
+  private ApplicationEventPublisher eventPublisher;
+
+  @Value("${qeats.redis.pool.max-total:128}")
+  private int maxTotal;
+
+  @Value("${qeats.redis.pool.max-idle:128}")
+  private int maxIdle;
+
+  @Value("${qeats.redis.pool.min-idle:16}")
+  private int minIdle;
+
+  @Value("${qeats.redis.pool.max-wait-ms:50}")
+  private long maxWaitMillis;
+
+  @Value("${qeats.redis.pool.test-on-borrow:false}")
+  private boolean testOnBorrow;
+
+  @Value("${qeats.redis.pool.test-on-return:false}")
+  private boolean testOnReturn;
+
+  @Value("${qeats.redis.pool.test-while-idle:true}")
+  private boolean testWhileIdle;
+
+  @Value("${qeats.redis.connect-timeout-ms:" + Protocol.DEFAULT_TIMEOUT + "}")
+  private int connectTimeoutMillis;
+
+  @Value("${qeats.redis.so-timeout-ms:" + Protocol.DEFAULT_TIMEOUT + "}")
+  private int soTimeoutMillis;
+
+  /**
+   * Returns the pool, creating it on first use.
+   * Safe to call from many threads; only one pool is ever built.
+   * Connections borrowed during a request are bounded by the request's deadline.
+   * @return the pool or null if it could not be created.
+   */
   public JedisPool getJedisPool() {
-    if (jedisPool != null) {
-      return jedisPool;
+    JedisPool pool = jedisPool;
+    if (pool != null) {
+      return pool;
     }
+    poolLock.lock();
     try {
-      final JedisPoolConfig poolConfig = buildPoolConfig();
-      jedisPool = new JedisPool(poolConfig, redisHost, redisPort);
+      if (jedisPool == null) {
+        jedisPool = new DeadlineAwareJedisPool(buildPoolConfig(), redisHost, redisPort,
+            connectTimeoutMillis, soTimeoutMillis);
+      }
     } catch (Exception e) {
       // We don't want to do anything for if cache initialization fails.
       e.printStackTrace();
+    } finally {
+      poolLock.unlock();
     }
     return jedisPool;
   }
 
 
+  /**
+   * Returns the pool if it exists, without creating it.
+   * @return the pool or null.
+   */
+  public JedisPool getCurrentJedisPool() {
+    return jedisPool;
+  }
+
   @Value("${spring.redis.port}")
   public void setRedisPort(int port) {
     System.out.println("setting up redis port to " + port);
@@ -51,27 +110,24 @@ public class RedisConfiguration {
    */
   @PostConstruct
   public void initCache() {
-    final JedisPoolConfig poolConfig = buildPoolConfig();
-    try {
-      jedisPool = new JedisPool(poolConfig, redisHost, redisPort);
-    } catch (Exception e) {
-      // We don't want to do anything for if cache initialization fails.
-      e.printStackTrace();
-    }
+    getJedisPool();
   }
 
-  private static JedisPoolConfig buildPoolConfig() {
+  private JedisPoolConfig buildPoolConfig() {
     final JedisPoolConfig poolConfig = new JedisPoolConfig();
-    poolConfig.setMaxTotal(128);
-    poolConfig.setMaxIdle(128);
-    poolConfig.setMinIdle(16);
-    poolConfig.setTestOnBorrow(true);
-    poolConfig.setTestOnReturn(true);
-    poolConfig.setTestWhileIdle(true);
+    poolConfig.setMaxTotal(maxTotal);
+    poolConfig.setMaxIdle(maxIdle);
+    poolConfig.setMinIdle(minIdle);
+    // Validation costs a PING per borrow/return; broken connections surface as errors anyway.
+    poolConfig.setTestOnBorrow(testOnBorrow);
+    poolConfig.setTestOnReturn(testOnReturn);
+    poolConfig.setTestWhileIdle(testWhileIdle);
     poolConfig.setMinEvictableIdleTimeMillis(Duration.ofSeconds(60).toMillis());
     poolConfig.setTimeBetweenEvictionRunsMillis(Duration.ofSeconds(30).toMillis());
     poolConfig.setNumTestsPerEvictionRun(3);
     poolConfig.setBlockWhenExhausted(true);
+    // Never wait forever for a connection when the pool is exhausted.
+    poolConfig.setMaxWaitMillis(maxWaitMillis);
     return poolConfig;
   }
 
@@ -99,11 +155,21 @@ public class RedisConfiguration {
    * TIP: This is useful if cache is stale or while performing tests.
    */
   public void destroyCache() {
-    if (jedisPool != null) {
-      jedisPool.getResource().flushAll();
-      jedisPool.destroy();
-      jedisPool = null;
-}
-}
+    poolLock.lock();
+    try {
+      if (jedisPool != null) {
+        try (Jedis jedis = jedisPool.getResource()) {
+          jedis.flushAll();
+        }
+        jedisPool.destroy();
+        jedisPool = null;
+      }
+    } finally {
+      poolLock.unlock();
+    }
+    if (eventPublisher != null) {
+      eventPublisher.publishEvent(new CacheDestroyedEvent(this));
+    }
+  }
 
 }
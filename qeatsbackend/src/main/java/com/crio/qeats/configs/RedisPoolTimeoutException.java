@@ -0,0 +1,26 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * No connection could be borrowed in time, because the pool stayed exhausted or the request ran
+ * out of time first. Nothing was sent to Redis, so this says nothing about its health.
+ */
+public class RedisPoolTimeoutException extends JedisException {
+
+  private static final long serialVersionUID = 1L;
+
+  public RedisPoolTimeoutException(String message) {
+    super(message);
+  }
+
+  public RedisPoolTimeoutException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import com.crio.qeats.cache.ResponseCache;
+import com.crio.qeats.controller.AdmissionControlInterceptor;
+import com.crio.qeats.controller.HotKeyInterceptor;
+import com.crio.qeats.controller.ResponseCacheFilter;
+import com.crio.qeats.controller.RestaurantController;
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.dto.RestaurantFields;
+import com.crio.qeats.telemetry.HotKeyTracker;
+import com.crio.qeats.utils.AdaptiveConcurrencyLimiter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+
+  private static final String RESTAURANTS_PATH =
+      RestaurantController.RESTAURANT_API_ENDPOINT + RestaurantController.RESTAURANTS_API;
+  private static final String RESTAURANTS_STREAM_PATH =
+      RestaurantController.RESTAURANT_API_ENDPOINT + RestaurantController.RESTAURANTS_STREAM_API;
+
+  @Autowired
+  private HotKeyTracker hotKeyTracker;
+
+  @Autowired
+  private ResponseCache responseCache;
+
+  @Autowired
+  private Jackson2ObjectMapperBuilder jacksonObjectMapperBuilder;
+
+  @Value("${qeats.response-cache.enabled:false}")
+  private boolean responseCacheEnabled;
+
+  @Value("${qeats.admission.enabled:false}")
+  private boolean admissionEnabled;
+
+  @Value("${qeats.admission.initial-limit:32}")
+  private int initialLimit;
+
+  @Value("${qeats.admission.min-limit:4}")
+  private int minLimit;
+
+  @Value("${qeats.admission.max-limit:256}")
+  private int maxLimit;
+
+  @Value("${qeats.admission.search-share:0.5}")
+  private double searchShare;
+
+  @Value("${qeats.admission.min-rtt-reset-samples:500}")
+  private int minRttResetSamples;
+
+  @Value("${qeats.admission.retry-after-seconds:1}")
+  private long retryAfterSeconds;
+
+  /**
+   * Serves repeated nearby requests from serialized responses, when enabled.
+   * TIP: Responses are computed for the center of the request's geohash cell.
+   *
+   * @return FilterRegistrationBean
+   */
+  @Bean
+  public FilterRegistrationBean<ResponseCacheFilter> responseCacheFilter() {
+    FilterRegistrationBean<ResponseCacheFilter> registration = new FilterRegistrationBean<>(
+        new ResponseCacheFilter(responseCache, hotKeyTracker));
+    registration.addUrlPatterns(RESTAURANTS_PATH);
+    registration.setEnabled(responseCacheEnabled);
+    return registration;
+  }
+
+  /**
+   * Lets the restaurants API leave out the fields a client did not ask for.
+   *
+   * @return Jackson2ObjectMapperBuilderCustomizer
+   */
+  @Bean
+  public Jackson2ObjectMapperBuilderCustomizer restaurantFieldsCustomizer() {
+    return builder -> builder.mixIn(Restaurant.class, RestaurantFields.FilterMixin.class)
+        .filters(RestaurantFields.ALL.filters());
+  }
+
+  /**
+   * Serves Smile and CBOR to clients asking for them, with the same Jackson setup as JSON. JSON
+   * stays first, so it is what clients get unless they ask for a binary format.
+   */
+  @Override
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    converters.removeIf(converter -> converter instanceof MappingJackson2SmileHttpMessageConverter
+        || converter instanceof MappingJackson2CborHttpMessageConverter);
+    // Back-references for the cities and cuisines repeated across restaurants.
+    SmileFactory smileFactory = new SmileFactory();
+    smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+    ObjectMapper smileMapper = new ObjectMapper(smileFactory);
+    jacksonObjectMapperBuilder.configure(smileMapper);
+    converters.add(new MappingJackson2SmileHttpMessageConverter(smileMapper));
+    ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+    jacksonObjectMapperBuilder.configure(cborMapper);
+    converters.add(new MappingJackson2CborHttpMessageConverter(cborMapper));
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    // Counted before admission control, so that shed traffic shows up as hot too.
+    registry.addInterceptor(new HotKeyInterceptor(hotKeyTracker))
+        .addPathPatterns(RESTAURANTS_PATH, RESTAURANTS_STREAM_PATH);
+    if (admissionEnabled) {
+      AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit,
+          minLimit, maxLimit, searchShare, minRttResetSamples);
+      registry.addInterceptor(new AdmissionControlInterceptor(limiter, retryAfterSeconds))
+          .addPathPatterns(RESTAURANTS_PATH, RESTAURANTS_STREAM_PATH);
+    }
+  }
+}
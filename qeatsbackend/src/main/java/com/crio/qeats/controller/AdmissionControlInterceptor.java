@@ -0,0 +1,81 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.controller;
+
+import com.crio.qeats.utils.AdaptiveConcurrencyLimiter;
+import com.crio.qeats.utils.AdaptiveConcurrencyLimiter.Priority;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Admission control for the restaurants API.
+ *
+ * <p>Search requests fan out to several Mongo queries and may only use part of the adaptive
+ * concurrency limit, so they are shed first when the service saturates. Nearby listings can
+ * use the whole limit. Streams scan as much as a search and are admitted as one, but how long
+ * they last is up to the client reading them, so their latency does not move the limit.
+ * Refused requests get a 503 with a Retry-After header right away.
+ */
+@Log4j2
+public class AdmissionControlInterceptor extends HandlerInterceptorAdapter {
+
+  private static final String ADMITTED_AT = AdmissionControlInterceptor.class.getName()
+      + ".admittedAt";
+  private static final String ADMITTED_AS = AdmissionControlInterceptor.class.getName()
+      + ".admittedAs";
+
+  private final AdaptiveConcurrencyLimiter limiter;
+  private final long retryAfterSeconds;
+
+  public AdmissionControlInterceptor(AdaptiveConcurrencyLimiter limiter, long retryAfterSeconds) {
+    this.limiter = limiter;
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response,
+      Object handler) {
+    Priority priority = priorityOf(request);
+    if (!limiter.tryAcquire(priority)) {
+      log.debug("Shedding {} request, limit {} in flight {}", priority, limiter.getLimit(),
+          limiter.getInFlight());
+      response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+      response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+      return false;
+    }
+    request.setAttribute(ADMITTED_AT, System.nanoTime());
+    request.setAttribute(ADMITTED_AS, priority);
+    return true;
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+      Object handler, Exception ex) {
+    Object admittedAt = request.getAttribute(ADMITTED_AT);
+    if (admittedAt != null) {
+      request.removeAttribute(ADMITTED_AT);
+      limiter.release((Priority) request.getAttribute(ADMITTED_AS),
+          isStream(request) ? 0 : System.nanoTime() - (Long) admittedAt);
+    }
+  }
+
+  static Priority priorityOf(HttpServletRequest request) {
+    if (isStream(request)) {
+      return Priority.SEARCH;
+    }
+    String searchFor = request.getParameter("searchFor");
+    return searchFor != null && !searchFor.isEmpty() ? Priority.SEARCH : Priority.NEARBY;
+  }
+
+  static boolean isStream(HttpServletRequest request) {
+    return request.getRequestURI().endsWith(RestaurantController.RESTAURANTS_STREAM_API);
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.controller;
+
+import com.crio.qeats.telemetry.HotKeyTracker;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Feeds the cells and searches of restaurants requests to the {@link HotKeyTracker}.
+ */
+public class HotKeyInterceptor extends HandlerInterceptorAdapter {
+
+  private final HotKeyTracker hotKeyTracker;
+
+  public HotKeyInterceptor(HotKeyTracker hotKeyTracker) {
+    this.hotKeyTracker = hotKeyTracker;
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response,
+      Object handler) {
+    double latitude;
+    double longitude;
+    try {
+      latitude = Double.parseDouble(request.getParameter("latitude"));
+      longitude = Double.parseDouble(request.getParameter("longitude"));
+    } catch (NullPointerException | NumberFormatException e) {
+      // Invalid requests are rejected by the controller, nothing to count.
+      return true;
+    }
+    if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+      return true;
+    }
+
+    // Streams list the cell whatever they are asked to search for.
+    String searchFor = request.getParameter("searchFor");
+    if (searchFor != null && !searchFor.isEmpty()
+        && !AdmissionControlInterceptor.isStream(request)) {
+      hotKeyTracker.recordSearch(latitude, longitude, searchFor);
+    } else {
+      hotKeyTracker.recordNearby(latitude, longitude);
+    }
+    return true;
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.controller;
+
+import ch.hsr.geohash.GeoHash;
+import ch.hsr.geohash.WGS84Point;
+import com.crio.qeats.cache.ResponseCache;
+import com.crio.qeats.cache.ResponseCache.CachedResponse;
+import com.crio.qeats.cache.RestaurantCache;
+import com.crio.qeats.dto.RestaurantFields;
+import com.crio.qeats.telemetry.HotKeyTracker;
+import com.crio.qeats.telemetry.PipelineMetrics;
+import com.crio.qeats.telemetry.RequestSummary;
+import com.crio.qeats.telemetry.ThreadAllocation;
+import java.io.IOException;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+/**
+ * Serves nearby restaurants requests from the {@link ResponseCache}.
+ *
+ * <p>Responses are cached per geohash cell and time slot (the slot also decides the peak hour
+ * serving radius). To that end a cacheable request is answered for the center of its cell,
+ * within about 110 m of the requested point. Clients sending back the ETag of a response get a
+ * 304 while it is current. Search requests are passed through. Requests asking for some of the
+ * fields only, or for another format, are cached apart.
+ */
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+  // Set by the controller when it ran out of time and answered with partial results.
+  public static final String PARTIAL_RESPONSE_ATTRIBUTE =
+      ResponseCacheFilter.class.getName() + ".partial";
+
+  private static final String GZIP = "gzip";
+
+  private final ResponseCache responseCache;
+  private final HotKeyTracker hotKeyTracker;
+
+  public ResponseCacheFilter(ResponseCache responseCache, HotKeyTracker hotKeyTracker) {
+    this.responseCache = responseCache;
+    this.hotKeyTracker = hotKeyTracker;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+      FilterChain filterChain) throws ServletException, IOException {
+    GeoHash cell = cacheableCell(request);
+    if (cell == null) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+    RestaurantFields fields;
+    try {
+      fields = RestaurantFields.parse(request.getParameter("fields"));
+    } catch (IllegalArgumentException e) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+    String key = cell.toBase32() + ":"
+        + LocalTime.now().toSecondOfDay() / (60 * responseCache.getSlotMinutes())
+        + (fields.isAll() ? "" : ":" + fields) + ":" + accept(request);
+
+    CachedResponse cached = responseCache.get(key);
+    if (cached != null) {
+      // The hot key interceptor does not see hits.
+      WGS84Point center = cell.getBoundingBoxCenterPoint();
+      hotKeyTracker.recordNearby(center.getLatitude(), center.getLongitude());
+      RequestSummary summary = RequestSummary.start("nearby", 0);
+      summary.setCacheOutcome("response");
+      long allocatedBytesAtStart = ThreadAllocation.currentThreadBytes();
+      write(request, response, cached);
+      summary.addAllocatedBytes(ThreadAllocation.since(allocatedBytesAtStart));
+      PipelineMetrics.recordAllocation(summary);
+      summary.log();
+      return;
+    }
+
+    long generation = responseCache.currentGeneration();
+    ContentCachingResponseWrapper captured = new ContentCachingResponseWrapper(response);
+    filterChain.doFilter(new CellCenterRequest(request, cell), captured);
+    if (captured.getStatus() != HttpServletResponse.SC_OK
+        || request.getAttribute(PARTIAL_RESPONSE_ATTRIBUTE) != null) {
+      captured.copyBodyToResponse();
+      return;
+    }
+    write(request, response, responseCache.put(key, generation,
+        captured.getContentAsByteArray(), captured.getContentType()));
+  }
+
+  private static GeoHash cacheableCell(HttpServletRequest request) {
+    String searchFor = request.getParameter("searchFor");
+    if (searchFor != null && !searchFor.isEmpty()) {
+      return null;
+    }
+    double latitude;
+    double longitude;
+    try {
+      latitude = Double.parseDouble(request.getParameter("latitude"));
+      longitude = Double.parseDouble(request.getParameter("longitude"));
+    } catch (NullPointerException | NumberFormatException e) {
+      return null;
+    }
+    if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+      return null;
+    }
+    return GeoHash.withCharacterPrecision(latitude, longitude, RestaurantCache.CELL_PRECISION);
+  }
+
+  private static void write(HttpServletRequest request, HttpServletResponse response,
+      CachedResponse cached) throws IOException {
+    boolean gzip = cached.getGzippedBody() != null && acceptsGzip(request);
+    response.setHeader(HttpHeaders.ETAG, gzip ? cached.getGzipEtag() : cached.getEtag());
+    response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING);
+    if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), cached)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    response.setStatus(HttpServletResponse.SC_OK);
+    if (cached.getContentType() != null) {
+      response.setContentType(cached.getContentType());
+    }
+    byte[] body = cached.getBody();
+    if (gzip) {
+      response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+      body = cached.getGzippedBody();
+    }
+    response.setContentLength(body.length);
+    response.getOutputStream().write(body);
+  }
+
+  // The format of the response (JSON, Smile, CBOR) depends on it.
+  private static String accept(HttpServletRequest request) {
+    String accept = request.getHeader(HttpHeaders.ACCEPT);
+    return accept == null ? "" : accept.trim().toLowerCase();
+  }
+
+  private static boolean acceptsGzip(HttpServletRequest request) {
+    String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    return acceptEncoding != null && acceptEncoding.toLowerCase().contains(GZIP);
+  }
+
+  // Either ETag of the response will do, both stand for the same content.
+  private static boolean matches(String ifNoneMatch, CachedResponse cached) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String tag : ifNoneMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals("*") || tag.equals(cached.getEtag()) || tag.equals(cached.getGzipEtag())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The request with its coordinates moved to the center of their cell.
+   */
+  private static class CellCenterRequest extends HttpServletRequestWrapper {
+
+    private final Map<String, String[]> parameters;
+
+    CellCenterRequest(HttpServletRequest request, GeoHash cell) {
+      super(request);
+      WGS84Point center = cell.getBoundingBoxCenterPoint();
+      Map<String, String[]> parameters = new HashMap<>(request.getParameterMap());
+      parameters.put("latitude", new String[] {String.valueOf(center.getLatitude())});
+      parameters.put("longitude", new String[] {String.valueOf(center.getLongitude())});
+      this.parameters = Collections.unmodifiableMap(parameters);
+    }
+
+    @Override
+    public String getParameter(String name) {
+      String[] values = parameters.get(name);
+      return values == null || values.length == 0 ? null : values[0];
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+      return parameters.get(name);
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+      return parameters;
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+      return Collections.enumeration(parameters.keySet());
+    }
+  }
+}
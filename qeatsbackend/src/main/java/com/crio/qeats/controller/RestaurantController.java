@@ -1,20 +1,40 @@
 package com.crio.qeats.controller;
 
 import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.dto.RestaurantFields;
 import com.crio.qeats.exchanges.GetRestaurantsRequest;
 import com.crio.qeats.exchanges.GetRestaurantsResponse;
 import com.crio.qeats.services.RestaurantService;
+import com.crio.qeats.telemetry.PipelineMetrics;
+import com.crio.qeats.telemetry.RequestEvent;
+import com.crio.qeats.telemetry.RequestSummary;
+import com.crio.qeats.utils.RequestContext;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.text.Normalizer;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import io.micrometer.core.instrument.util.StringUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.http.HttpStatus;
 
 @RestController
@@ -23,20 +43,152 @@ public class RestaurantController {
 
   public static final String RESTAURANT_API_ENDPOINT = "/qeats/v1";
   public static final String RESTAURANTS_API = "/restaurants";
+  public static final String RESTAURANTS_STREAM_API = "/restaurants/stream";
   public static final String MENU_API = "/menu";
   public static final String CART_API = "/cart";
   public static final String CART_ITEM_API = "/cart/item";
   public static final String CART_CLEAR_API = "/cart/clear";
   public static final String POST_ORDER_API = "/order";
   public static final String GET_ORDERS_API = "/orders";
+  public static final String NDJSON_VALUE = "application/x-ndjson";
+
+  private static final ObjectWriter RESTAURANT_WRITER =
+      RestaurantFields.configure(new ObjectMapper())
+      .writerFor(Restaurant.class)
+      .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
 
   @Autowired
   private RestaurantService restaurantService;
 
+  // Latency budget of a request, enforced down to Mongo and Redis. 0 means no deadline.
+  @Value("${qeats.request.timeout-ms:0}")
+  private long requestTimeoutMillis;
+
+  // Fraction of the requests logging per-restaurant diagnostics (DEBUG logs them all).
+  @Value("${qeats.log.verbose-sample-rate:0.0}")
+  private double verboseSampleRate;
+
+  // Streams flush after this many restaurants; a slow client then blocks the cursor.
+  @Value("${qeats.stream.flush-every:64}")
+  private int streamFlushEvery;
+
+  // Largest radius a stream may ask for.
+  @Value("${qeats.stream.max-radius-km:20.0}")
+  private double streamMaxRadiusInKms;
+
+  @PostConstruct
+  public void init() {
+    if (streamFlushEvery <= 0) {
+      throw new IllegalStateException(
+          "qeats.stream.flush-every must be positive, was " + streamFlushEvery);
+    }
+  }
+
   @GetMapping(RESTAURANT_API_ENDPOINT + RESTAURANTS_API)
-  public ResponseEntity<GetRestaurantsResponse> getRestaurants(
+  public ResponseEntity<?> getRestaurants(
       @Valid GetRestaurantsRequest getRestaurantsRequest) {
-    log.info("getRestaurants called with {}", getRestaurantsRequest);
+    RestaurantFields fields;
+    try {
+      fields = RestaurantFields.parse(getRestaurantsRequest.getFields());
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(null);
+    }
+    String searchFor = getRestaurantsRequest.getSearchFor();
+    RequestSummary summary = RequestSummary.start(
+        searchFor == null || searchFor.isEmpty() ? "nearby" : "search", verboseSampleRate);
+    RequestEvent event = new RequestEvent();
+    RequestContext.begin(requestTimeoutMillis, summary);
+    RequestContext.setFields(fields);
+    try {
+      ResponseEntity<GetRestaurantsResponse> response = findRestaurants(getRestaurantsRequest);
+      summary.setReturned(response.getBody() == null
+          ? 0 : response.getBody().getRestaurants().size());
+      if (RequestContext.isExpired()) {
+        // Best effort results, not to be cached.
+        RequestContextHolder.currentRequestAttributes().setAttribute(
+            ResponseCacheFilter.PARTIAL_RESPONSE_ATTRIBUTE, Boolean.TRUE,
+            RequestAttributes.SCOPE_REQUEST);
+      }
+      if (fields.isAll() || response.getBody() == null) {
+        return response;
+      }
+      MappingJacksonValue body = new MappingJacksonValue(response.getBody());
+      body.setFilters(fields.filters());
+      return ResponseEntity.status(response.getStatusCode()).body(body);
+    } finally {
+      RequestContext.end();
+      PipelineMetrics.recordAllocation(summary);
+      summary.log();
+      event.finish(summary, getRestaurantsRequest.getLatitude(),
+          getRestaurantsRequest.getLongitude(), searchFor);
+    }
+  }
+
+  /**
+   * Nearby open restaurants as newline-delimited JSON, one restaurant per line.
+   *
+   * <p>Restaurants are written as they are read from Mongo, so memory stays flat whatever the
+   * number of results, and the first one goes out as soon as it is found. Takes an optional
+   * radius in kms, otherwise the serving radius of the time applies.
+   */
+  @GetMapping(value = RESTAURANT_API_ENDPOINT + RESTAURANTS_STREAM_API, produces = NDJSON_VALUE)
+  public void streamRestaurants(GetRestaurantsRequest getRestaurantsRequest,
+      @RequestParam(value = "radius", required = false) Double radiusInKms,
+      HttpServletResponse response) throws IOException {
+    Double latitude = getRestaurantsRequest.getLatitude();
+    Double longitude = getRestaurantsRequest.getLongitude();
+    if (latitude == null || longitude == null || latitude < -90 || latitude > 90
+        || longitude < -180 || longitude > 180
+        || (radiusInKms != null && (radiusInKms <= 0 || radiusInKms > streamMaxRadiusInKms))) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+      return;
+    }
+    ObjectWriter writer;
+    try {
+      writer = RESTAURANT_WRITER.with(
+          RestaurantFields.parse(getRestaurantsRequest.getFields()).filters());
+    } catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+      return;
+    }
+
+    response.setContentType(NDJSON_VALUE);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    JsonGenerator generator = writer.getFactory()
+        .createGenerator(response.getOutputStream());
+    int[] written = {0};
+    RequestSummary summary = RequestSummary.start("stream", verboseSampleRate);
+    RequestEvent event = new RequestEvent();
+    // No deadline: a stream lasts as long as its client takes to read it. The Mongo work it
+    // causes is bounded by the cursor's own max time.
+    RequestContext.begin(0, summary);
+    try {
+      restaurantService.streamRestaurantsCloseBy(getRestaurantsRequest, LocalTime.now(),
+          radiusInKms, restaurant -> {
+            try {
+              writer.writeValue(generator, sanitizeName(restaurant));
+              generator.writeRaw('\n');
+              // The first one right away, for the time to first byte.
+              if (written[0]++ % streamFlushEvery == 0) {
+                generator.flush();
+              }
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+      generator.close();
+    } finally {
+      RequestContext.end();
+      summary.setReturned(written[0]);
+      PipelineMetrics.recordAllocation(summary);
+      summary.log();
+      event.finish(summary, latitude, longitude, null);
+    }
+  }
+
+  private ResponseEntity<GetRestaurantsResponse> findRestaurants(
+      GetRestaurantsRequest getRestaurantsRequest) {
+    log.debug("getRestaurants called with {}", getRestaurantsRequest);
     GetRestaurantsResponse getRestaurantsResponse;
     if (getRestaurantsRequest.getLatitude() != null && getRestaurantsRequest.getLongitude() != null
         && getRestaurantsRequest.getLatitude() >= -90 && getRestaurantsRequest.getLatitude() <= 90
@@ -48,7 +200,6 @@ public class RestaurantController {
           && !getRestaurantsRequest.getSearchFor().isEmpty()) {
         getRestaurantsResponse =
             restaurantService.findRestaurantsBySearchQuery(getRestaurantsRequest, LocalTime.now());
-        log.info("getRestaurants returned {}", getRestaurantsResponse);
         // restaurants = getRestaurantsResponse.getRestaurants();
       } else {
         getRestaurantsResponse =
@@ -58,10 +209,11 @@ public class RestaurantController {
       if (getRestaurantsResponse != null && !getRestaurantsResponse.getRestaurants().isEmpty()) {
         restaurants = getRestaurantsResponse.getRestaurants();
 
+        List<Restaurant> sanitized = new ArrayList<>(restaurants.size());
         for (int i = 0; i < restaurants.size(); i++) {
-          restaurants.get(i).setName(restaurants.get(i).getName().replace("é", "?"));
+          sanitized.add(sanitizeName(restaurants.get(i)));
         }
-        log.info("getRestaurants returned {}", getRestaurantsResponse);
+        getRestaurantsResponse.setRestaurants(sanitized);
         return ResponseEntity.ok().body(getRestaurantsResponse);
       } else {
         return new ResponseEntity<>(HttpStatus.OK);
@@ -75,6 +227,19 @@ public class RestaurantController {
     }
   }
 
+  // The restaurants found may be shared with caches and their writers, so they are not modified:
+  // one with a name to sanitize is replaced by a copy.
+  private static Restaurant sanitizeName(Restaurant restaurant) {
+    String name = restaurant.getName();
+    if (name == null || name.indexOf('é') < 0) {
+      return restaurant;
+    }
+    return new Restaurant(restaurant.getRestaurantId(), name.replace("é", "?"),
+        restaurant.getCity(), restaurant.getImageUrl(), restaurant.getLatitude(),
+        restaurant.getLongitude(), restaurant.getOpensAt(), restaurant.getClosesAt(),
+        restaurant.getAttributes());
+  }
+
   // private boolean isValidLatitude(double latitude) {
   //   return latitude >= -90 && latitude <= 90;
   // }
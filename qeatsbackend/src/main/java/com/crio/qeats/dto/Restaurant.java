@@ -10,6 +10,7 @@ package com.crio.qeats.dto;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import java.util.ArrayList;
 import java.util.List;
 import javax.validation.constraints.NotNull;
@@ -36,10 +37,14 @@ import lombok.NoArgsConstructor;
 // }
 
 
+// The property names are the schema of the binary formats (Smile, CBOR) of the API and of the
+// cache: add properties, never rename them. The fixed order keeps encodings, and ETags, stable.
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @JsonIgnoreProperties(ignoreUnknown = true)
+@JsonPropertyOrder({"restaurantId", "name", "city", "imageUrl", "latitude", "longitude",
+    "opensAt", "closesAt", "attributes"})
 public class Restaurant {
 
     @JsonProperty("restaurantId")
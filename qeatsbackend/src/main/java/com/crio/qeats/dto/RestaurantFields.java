@@ -0,0 +1,106 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.dto;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The fields of {@link Restaurant} a client asked for, as in {@code fields=restaurantId,name}.
+ *
+ * <p>The restaurant id always comes along. Restaurants are serialized with only these fields
+ * by mappers set up with {@link #configure}; other mappers, like the cache codec's, still
+ * write every field.
+ */
+public final class RestaurantFields {
+
+  public static final String FILTER_ID = "restaurantFields";
+
+  public static final String RESTAURANT_ID = "restaurantId";
+
+  // Property names of Restaurant, which are also the field names of the Mongo documents.
+  public static final Set<String> NAMES = Collections.unmodifiableSet(new LinkedHashSet<>(
+      Arrays.asList(RESTAURANT_ID, "name", "city", "imageUrl", "latitude", "longitude",
+          "opensAt", "closesAt", "attributes")));
+
+  public static final RestaurantFields ALL = new RestaurantFields(NAMES);
+
+  private static final FilterProvider SERIALIZE_ALL = new SimpleFilterProvider()
+      .addFilter(FILTER_ID, SimpleBeanPropertyFilter.serializeAll());
+
+  private final Set<String> names;
+
+  private RestaurantFields(Set<String> names) {
+    this.names = Collections.unmodifiableSet(names);
+  }
+
+  /**
+   * Parses a comma separated list of field names.
+   *
+   * @param fields the list, or null or empty for all the fields
+   * @throws IllegalArgumentException if a name is not a field of {@link Restaurant}
+   */
+  public static RestaurantFields parse(String fields) {
+    if (fields == null || fields.trim().isEmpty()) {
+      return ALL;
+    }
+    Set<String> names = new TreeSet<>();
+    names.add(RESTAURANT_ID);
+    for (String name : fields.split(",")) {
+      name = name.trim();
+      if (!NAMES.contains(name)) {
+        throw new IllegalArgumentException("Unknown restaurant field: " + name);
+      }
+      names.add(name);
+    }
+    return names.size() == NAMES.size() ? ALL : new RestaurantFields(names);
+  }
+
+  /**
+   * Sets a mapper up to serialize restaurants through the filter of {@link #filters}, with all
+   * the fields when none is given.
+   */
+  public static ObjectMapper configure(ObjectMapper mapper) {
+    return mapper.addMixIn(Restaurant.class, FilterMixin.class).setFilterProvider(SERIALIZE_ALL);
+  }
+
+  public boolean isAll() {
+    return this == ALL;
+  }
+
+  public Set<String> getNames() {
+    return names;
+  }
+
+  /**
+   * Filters to serialize restaurants with, leaving out the fields not asked for.
+   */
+  public FilterProvider filters() {
+    return isAll() ? SERIALIZE_ALL : new SimpleFilterProvider()
+        .addFilter(FILTER_ID, SimpleBeanPropertyFilter.filterOutAllExcept(names));
+  }
+
+  /**
+   * The same string for the same fields, whatever their order in the request.
+   */
+  @Override
+  public String toString() {
+    return String.join(",", names);
+  }
+
+  @JsonFilter(FILTER_ID)
+  public abstract static class FilterMixin {
+  }
+}
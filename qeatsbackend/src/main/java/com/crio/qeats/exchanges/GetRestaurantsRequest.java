@@ -66,5 +66,13 @@ public class GetRestaurantsRequest {
     private Double longitude;
 
     private String searchFor;
+
+    // Comma separated fields of the restaurants to return, all of them when absent.
+    private String fields;
+
+    public GetRestaurantsRequest(Double latitude, Double longitude, String searchFor) {
+        this(latitude, longitude);
+        this.searchFor = searchFor;
+    }
 }
 
@@ -7,6 +7,7 @@
 package com.crio.qeats.exchanges;
 
 import com.crio.qeats.dto.Restaurant;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.ArrayList;
 import java.util.List;
 import lombok.AllArgsConstructor;
@@ -52,6 +53,7 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class GetRestaurantsResponse {
 
+    @JsonProperty("restaurants")
     private List<Restaurant> restaurants = new ArrayList<Restaurant>();
 }
 
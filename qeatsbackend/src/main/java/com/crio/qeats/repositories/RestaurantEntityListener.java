@@ -0,0 +1,61 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositories;
+
+import com.crio.qeats.cache.CatalogueChangedEvent;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.GeoLocation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeDeleteEvent;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes a {@link CatalogueChangedEvent} for every restaurant saved or deleted.
+ */
+@Component
+public class RestaurantEntityListener extends AbstractMongoEventListener<RestaurantEntity> {
+
+  @Autowired
+  private ApplicationEventPublisher eventPublisher;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Override
+  public void onAfterSave(AfterSaveEvent<RestaurantEntity> event) {
+    publish(Collections.singletonList(event.getSource()), false);
+  }
+
+  @Override
+  public void onBeforeDelete(BeforeDeleteEvent<RestaurantEntity> event) {
+    // A delete only carries its query, look up the restaurants it is about to remove.
+    publish(mongoTemplate.find(new BasicQuery(event.getDocument()), RestaurantEntity.class,
+        event.getCollectionName()), true);
+  }
+
+  private void publish(List<RestaurantEntity> restaurants, boolean deleted) {
+    if (restaurants.isEmpty()) {
+      return;
+    }
+    List<String> restaurantIds = new ArrayList<>(restaurants.size());
+    List<GeoLocation> locations = new ArrayList<>(restaurants.size());
+    for (RestaurantEntity restaurant : restaurants) {
+      restaurantIds.add(restaurant.getRestaurantId());
+      locations.add(new GeoLocation(restaurant.getLatitude(), restaurant.getLongitude()));
+    }
+    eventPublisher.publishEvent(
+        new CatalogueChangedEvent(this, restaurantIds, locations, deleted));
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.dto.Item;
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.repositories.MenuRepository;
+import com.crio.qeats.repositories.RestaurantRepository;
+import com.crio.qeats.telemetry.PipelineMetrics;
+import com.crio.qeats.utils.BatchLoader;
+import com.crio.qeats.utils.RequestContext;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+/**
+ * Batches the id lookups that concurrent searches make within a few milliseconds of each other
+ * into a single {@code $in} query per collection.
+ *
+ * <p>A batch serves requests with different deadlines, so it runs with Mongo's maxTimeMS set to
+ * a whole request's budget, and each caller stops waiting for it when its own budget runs out.
+ */
+@Component
+public class RepositoryLookupBatcher {
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Value("${qeats.batch.window-ms:2}")
+  private long windowMillis;
+
+  @Value("${qeats.batch.max-size:256}")
+  private int maxBatchSize;
+
+  // Latency budget of a request; 0 means no deadline.
+  @Value("${qeats.request.timeout-ms:0}")
+  private long requestTimeoutMillis;
+
+  private ScheduledExecutorService timer;
+
+  // Batches get their own threads: callers may be blocking the shared task executor while
+  // they wait for the batch, so running it there could starve it.
+  private ExecutorService dispatchExecutor;
+
+  private BatchLoader<String, RestaurantEntity> restaurantsById;
+  private BatchLoader<String, MenuEntity> menusByItemId;
+
+  @PostConstruct
+  public void init() {
+    timer = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("qeats-batch-timer").setDaemon(true).build());
+    dispatchExecutor = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("qeats-batch-%d").setDaemon(true).build());
+
+    restaurantsById = new BatchLoader<>(
+        ids -> find("restaurants.byIdIn", new Query(Criteria.where("restaurantId").in(ids)),
+            RestaurantEntity.class),
+        restaurant -> Collections.singletonList(restaurant.getRestaurantId()),
+        windowMillis, maxBatchSize, timer, dispatchExecutor);
+    menusByItemId = new BatchLoader<>(
+        itemIds -> find("menus.byItemIdIn", new Query(Criteria.where("items.itemId").in(itemIds)),
+            MenuEntity.class),
+        menu -> menu.getItems().stream().map(Item::getItemId).collect(Collectors.toList()),
+        windowMillis, maxBatchSize, timer, dispatchExecutor);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    timer.shutdownNow();
+    dispatchExecutor.shutdownNow();
+  }
+
+  /**
+   * Batched equivalent of {@link RestaurantRepository#findRestaurantsByRestaurantIdIn(List)}.
+   * @return restaurants with any of the ids or empty list if there is none, or if the request
+   *     ran out of time.
+   */
+  public List<RestaurantEntity> findRestaurantsByRestaurantIdIn(List<String> restaurantIds) {
+    return restaurantsById.load(restaurantIds);
+  }
+
+  /**
+   * Batched equivalent of {@link MenuRepository#findMenusByItemsItemIdIn(List)}.
+   * @return menus serving any of the items or empty list if there is none, or if the request
+   *     ran out of time.
+   */
+  public List<MenuEntity> findMenusByItemsItemIdIn(List<String> itemIds) {
+    return menusByItemId.load(itemIds);
+  }
+
+  // Batches run on the dispatch threads, which have no request context. Unbatched, the query
+  // runs on the request's thread and gets what is left of its budget.
+  private <T> List<T> find(String queryName, Query query, Class<T> entityClass) {
+    long maxTimeMillis = requestTimeoutMillis;
+    if (RequestContext.hasDeadline()) {
+      maxTimeMillis = RequestContext.remainingMillis();
+      if (maxTimeMillis <= 0) {
+        return new ArrayList<>();
+      }
+    }
+    if (maxTimeMillis > 0) {
+      query.maxTimeMsec(maxTimeMillis);
+    }
+    try {
+      return PipelineMetrics.timeMongo(queryName, () -> mongoTemplate.find(query, entityClass));
+    } catch (DataAccessException e) {
+      if (RequestContext.isExpired()) {
+        return new ArrayList<>();
+      }
+      throw e;
+    }
+  }
+}
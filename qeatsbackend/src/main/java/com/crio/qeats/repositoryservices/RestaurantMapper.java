@@ -0,0 +1,53 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.telemetry.MappingEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps restaurant entities to DTOs with plain getters and setters.
+ *
+ * <p>Replaces ModelMapper on the request path, which looked the mapping up by reflection on
+ * every call and built a new mapper per search.
+ */
+public final class RestaurantMapper {
+
+  private RestaurantMapper() {
+  }
+
+  /**
+   * Maps an entity; the DTO shares no mutable state with it.
+   */
+  public static Restaurant toRestaurant(RestaurantEntity entity) {
+    Restaurant restaurant = new Restaurant();
+    restaurant.setRestaurantId(entity.getRestaurantId());
+    restaurant.setName(entity.getName());
+    restaurant.setCity(entity.getCity());
+    restaurant.setImageUrl(entity.getImageUrl());
+    restaurant.setLatitude(entity.getLatitude());
+    restaurant.setLongitude(entity.getLongitude());
+    restaurant.setOpensAt(entity.getOpensAt());
+    restaurant.setClosesAt(entity.getClosesAt());
+    restaurant.setAttributes(
+        entity.getAttributes() == null ? null : new ArrayList<>(entity.getAttributes()));
+    return restaurant;
+  }
+
+  public static List<Restaurant> toRestaurants(List<RestaurantEntity> entities) {
+    MappingEvent event = new MappingEvent();
+    List<Restaurant> restaurants = new ArrayList<>(entities.size());
+    for (RestaurantEntity entity : entities) {
+      restaurants.add(toRestaurant(entity));
+    }
+    event.finish(restaurants.size());
+    return restaurants;
+  }
+}
@@ -7,9 +7,11 @@
 package com.crio.qeats.repositoryservices;
 
 import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.dto.RestaurantFields;
 import java.time.LocalTime;
 import java.util.List;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import org.springframework.scheduling.annotation.Async;
 
 public interface RestaurantRepositoryService {
@@ -28,6 +30,15 @@ public interface RestaurantRepositoryService {
   List<Restaurant> findAllRestaurantsCloseBy(Double latitude, Double longitude,
       LocalTime currentTime, Double servingRadiusInKms);
 
+  /**
+   * Same as {@link #findAllRestaurantsCloseBy}, but hands the restaurants to the consumer one at
+   * a time as they are read from Mongo, so that none of them is held once consumed.
+   * @param fields fields the restaurants need, the others may be left out
+   * @param consumer receives the open restaurants within the specified radius, in no order
+   */
+  void streamRestaurantsCloseBy(Double latitude, Double longitude,
+      LocalTime currentTime, Double servingRadiusInKms, RestaurantFields fields,
+      Consumer<Restaurant> consumer);
 
   /**
    * Get the list of open restaurants within the specified serving radius.
@@ -7,40 +7,59 @@
 package com.crio.qeats.repositoryservices;
 
 import ch.hsr.geohash.GeoHash;
-import com.crio.qeats.configs.RedisConfiguration;
+import ch.hsr.geohash.WGS84Point;
+import com.crio.qeats.cache.CacheFillLock;
+import com.crio.qeats.cache.CacheWriteBehind;
+import com.crio.qeats.cache.CellEntry;
+import com.crio.qeats.cache.EarlyRefreshPolicy;
+import com.crio.qeats.cache.NearCache;
+import com.crio.qeats.cache.RedisCacheAccess;
+import com.crio.qeats.cache.RestaurantCache;
+import com.crio.qeats.configs.ExecutorConfiguration;
 import com.crio.qeats.dto.Item;
 import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.dto.RestaurantFields;
 import com.crio.qeats.globals.GlobalConstants;
 import com.crio.qeats.models.ItemEntity;
 import com.crio.qeats.models.MenuEntity;
 import com.crio.qeats.models.RestaurantEntity;
-import com.crio.qeats.repositories.ItemRepository;
 import com.crio.qeats.repositories.MenuRepository;
 import com.crio.qeats.repositories.RestaurantRepository;
+import com.crio.qeats.telemetry.FilterEvent;
+import com.crio.qeats.telemetry.PipelineMetrics;
+import com.crio.qeats.telemetry.RequestSummary;
 import com.crio.qeats.utils.GeoLocation;
 import com.crio.qeats.utils.GeoUtils;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.IOException;
+import com.crio.qeats.utils.RequestContext;
+import com.crio.qeats.utils.SingleFlight;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import javax.inject.Provider;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Service;
 import redis.clients.jedis.Jedis;
@@ -53,9 +72,6 @@ public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryServ
   @Autowired
   private MongoTemplate mongoTemplate;
 
-  @Autowired
-  private Provider<ModelMapper> modelMapperProvider;
-
   @Autowired
   RestaurantRepository restaurantRepository;
 
@@ -63,84 +79,398 @@ public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryServ
   MenuRepository menuRepository;
 
   @Autowired
-  ItemRepository itemRepository;
+  private RepositoryLookupBatcher repositoryLookupBatcher;
+
+  @Autowired
+  private RedisCacheAccess redisCacheAccess;
+
+  @Autowired
+  private RestaurantCache restaurantCache;
+
+  @Autowired
+  private CacheWriteBehind cacheWriteBehind;
+
+  // Cached cells hold the restaurants up to this distance, the largest serving radius.
+  @Value("${qeats.cache.cell-radius-km:5.0}")
+  private double cellRadiusInKms;
+
+  @Autowired
+  private EarlyRefreshPolicy earlyRefreshPolicy;
+
+  @Autowired
+  private CacheFillLock cacheFillLock;
 
   @Autowired
-  private RedisConfiguration redisConfiguration;
+  private NearCache nearCache;
+
+  // Documents per round trip when streaming. Small batches keep the memory of a stream low,
+  // large ones save round trips.
+  @Value("${qeats.stream.batch-size:256}")
+  private int streamBatchSize;
+
+  // Mongo processing time a stream's cursor may use over all its batches. 0 means no limit.
+  @Value("${qeats.stream.max-time-ms:10000}")
+  private long streamMaxTimeMillis;
 
   @Autowired
-  private ObjectMapper objectMapper;
+  @Qualifier(ExecutorConfiguration.TASK_EXECUTOR)
+  private ExecutorService taskExecutor;
+
+  // Length of a degree of latitude, as in GeoUtils.
+  private static final double KMS_PER_DEGREE = 6371 * Math.PI / 180;
+
+  // Read whatever fields were asked for, for the distance and opening hours checks.
+  private static final List<String> FILTER_FIELDS =
+      Arrays.asList("latitude", "longitude", "opensAt", "closesAt");
+
+  private static final String REFRESH_FLIGHT_PREFIX = "refresh:";
+
+  private final SingleFlight<String, List<Restaurant>> cacheFillFlight = new SingleFlight<>();
+
+  // Opening hours parsed once: a catalogue has few distinct ones, and each parse allocates.
+  private static final int MAX_PARSED_TIMES = 4096;
+  private static final ConcurrentMap<String, LocalTime> PARSED_TIMES = new ConcurrentHashMap<>();
 
   private boolean isOpenNow(LocalTime time, RestaurantEntity res) {
-    LocalTime openingTime = LocalTime.parse(res.getOpensAt());
-    LocalTime closingTime = LocalTime.parse(res.getClosesAt());
+    return isOpenNow(time, res.getOpensAt(), res.getClosesAt());
+  }
+
+  static boolean isOpenNow(LocalTime time, String opensAt, String closesAt) {
+    LocalTime openingTime = parseTime(opensAt);
+    LocalTime closingTime = parseTime(closesAt);
 
     return time.isAfter(openingTime) && time.isBefore(closingTime);
   }
 
+  private static LocalTime parseTime(String time) {
+    LocalTime parsed = PARSED_TIMES.get(time);
+    if (parsed == null) {
+      parsed = LocalTime.parse(time);
+      if (PARSED_TIMES.size() < MAX_PARSED_TIMES) {
+        PARSED_TIMES.putIfAbsent(time, parsed);
+      }
+    }
+    return parsed;
+  }
+
   @Override
   public List<Restaurant> findAllRestaurantsCloseBy(Double latitude,
       Double longitude, LocalTime currentTime, Double servingRadiusInKms) {
 
-    log.info("findAllRestaurantsCloseBy called with latitude: {}, longitude: {}, currentTime: {}, servingRadiusInKms: {}",
+    log.debug("findAllRestaurantsCloseBy called with latitude: {}, longitude: {}, currentTime: {}, servingRadiusInKms: {}",
         latitude, longitude, currentTime, servingRadiusInKms);
+    RequestSummary summary = RequestContext.summary();
+
+    long startNanos = System.nanoTime();
+    List<Restaurant> candidates;
+    if (servingRadiusInKms > cellRadiusInKms) {
+      // Cached cells only know the restaurants up to cellRadiusInKms around them.
+      summary.setCacheOutcome("bypass");
+      candidates = findRestaurantsAround(latitude, longitude, servingRadiusInKms);
+    } else {
+      // Cells cache every restaurant that may serve some point of the cell, open or not.
+      // Opening hours and the exact distance are checked per request, so entries stay valid
+      // whatever the time of day and the serving radius.
+      GeoHash geoHash = GeoHash.withCharacterPrecision(latitude, longitude,
+          RestaurantCache.CELL_PRECISION);
+      candidates = findCellCandidates(geoHash);
+    }
+    long filterNanos = System.nanoTime();
+    PipelineMetrics.recordStage("candidates", filterNanos - startNanos);
+    List<Restaurant> restaurants = filterCloseByAndOpen(candidates, latitude, longitude,
+        currentTime, servingRadiusInKms);
+    PipelineMetrics.recordStage("filter", System.nanoTime() - filterNanos);
+    return restaurants;
+  }
 
-    GeoHash geoHash = GeoHash.withCharacterPrecision(latitude, longitude, 7);
+  @Override
+  public void streamRestaurantsCloseBy(Double latitude, Double longitude,
+      LocalTime currentTime, Double servingRadiusInKms, RestaurantFields fields,
+      Consumer<Restaurant> consumer) {
+    // Mongo narrows the scan down to the bounding box of the disk, the rest is checked here.
+    Query query = new Query(boundingBox(latitude, longitude, servingRadiusInKms))
+        .cursorBatchSize(streamBatchSize);
+    if (streamMaxTimeMillis > 0) {
+      query.maxTimeMsec(streamMaxTimeMillis);
+    }
+    includeFields(query, fields);
+    int scanned = 0;
+    int streamed = 0;
+    try (CloseableIterator<RestaurantEntity> cursor =
+        mongoTemplate.stream(query, RestaurantEntity.class)) {
+      while (cursor.hasNext()) {
+        RestaurantEntity restaurantEntity = cursor.next();
+        scanned++;
+        if (isOpenNow(currentTime, restaurantEntity)
+            && GeoUtils.findDistanceInKm(latitude, longitude, restaurantEntity.getLatitude(),
+                restaurantEntity.getLongitude()) < servingRadiusInKms) {
+          consumer.accept(RestaurantMapper.toRestaurant(restaurantEntity));
+          streamed++;
+        }
+      }
+    }
+    RequestContext.summary().addScanned(scanned);
+    log.debug("Streamed {} of {} restaurants within {} km", streamed, scanned,
+        servingRadiusInKms);
+  }
+
+  /**
+   * Projects a query of restaurants down to the fields asked for, when not all of them were,
+   * and the ones the distance and opening hours checks need.
+   */
+  private static Query includeFields(Query query, RestaurantFields fields) {
+    if (!fields.isAll()) {
+      query.fields().exclude("_id");
+      for (String field : fields.getNames()) {
+        query.fields().include(field);
+      }
+      for (String field : FILTER_FIELDS) {
+        query.fields().include(field);
+      }
+    }
+    return query;
+  }
+
+  private static Criteria boundingBox(double latitude, double longitude, double radiusInKms) {
+    double latitudeDelta = radiusInKms / KMS_PER_DEGREE;
+    Criteria criteria = Criteria.where("latitude")
+        .gte(latitude - latitudeDelta).lte(latitude + latitudeDelta);
+    double longitudeDelta = latitudeDelta / Math.cos(Math.toRadians(
+        Math.min(Math.abs(latitude) + latitudeDelta, 90)));
+    // Near the poles and across the antimeridian the box does not bound longitudes.
+    if (longitudeDelta < 180 && Math.abs(longitude) + longitudeDelta <= 180) {
+      criteria = criteria.and("longitude")
+          .gte(longitude - longitudeDelta).lte(longitude + longitudeDelta);
+    }
+    return criteria;
+  }
+
+  private List<Restaurant> findCellCandidates(GeoHash geoHash) {
     String cacheKey = geoHash.toBase32();
-    List<Restaurant> restaurants = new ArrayList<>();
+    RequestSummary summary = RequestContext.summary();
 
-    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
-      // Check cache first
-      String cachedData = jedis.get(cacheKey);
-      if (cachedData != null) {
-        log.info("Cache hit for key: {}", cacheKey);
-        restaurants = objectMapper.readValue(cachedData, new TypeReference<List<Restaurant>>() {});
-        return restaurants;
+    List<Restaurant> nearCached = nearCache.get(cacheKey);
+    if (nearCached != null) {
+      log.debug("Near cache hit for key: {}", cacheKey);
+      summary.setCacheOutcome("near");
+      return nearCached;
+    }
+    // Read before Redis, so that a list read under an older generation is not kept.
+    long generation = nearCache.currentGeneration();
+
+    // Check cache first; with Redis unavailable this is a miss. The connection goes back to the
+    // pool before any missing record is reloaded.
+    CachedCell cached = redisCacheAccess.execute(jedis -> {
+      CellEntry cell = restaurantCache.getCell(jedis, cacheKey);
+      return cell == null ? null : readRecords(jedis, cell);
+    }, () -> null);
+    if (cached != null) {
+      List<Restaurant> restaurants = assembleCell(cached);
+      if (earlyRefreshPolicy.shouldRefresh(cached.cell, System.currentTimeMillis())) {
+        // Serve what is cached, stale or about to be, and recompute it in the background.
+        log.debug("Refreshing cache ahead of expiry for key: {}", cacheKey);
+        summary.setCacheOutcome("redis-refresh");
+        refreshCell(cacheKey, geoHash);
       } else {
-        log.info("Cache miss for key: {}", cacheKey);
+        log.debug("Cache hit for key: {}", cacheKey);
+        summary.setCacheOutcome("redis");
       }
+      nearCache.put(cacheKey, generation, restaurants);
+      return restaurants;
+    }
+    log.debug("Cache miss for key: {}", cacheKey);
+    summary.setCacheOutcome("miss");
+
+    // Only one computation per key runs in this JVM, concurrent misses share its result.
+    // It runs on the task executor so that a caller can stop waiting when its deadline
+    // passes, while the computation carries on and fills the cache for the next request.
+    try {
+      List<Restaurant> restaurants = cacheFillFlight.execute(cacheKey,
+          () -> fillCellCandidates(cacheKey, geoHash, false), taskExecutor,
+          RequestContext.remainingMillis());
+      nearCache.put(cacheKey, generation, restaurants);
+      return restaurants;
+    } catch (TimeoutException e) {
+      log.warn("Deadline exceeded while computing restaurants close by for key: {}", cacheKey);
+      summary.setCacheOutcome("timeout");
+      return new ArrayList<>();
+    }
+  }
 
-      // Fetch from repository if not in cache
-      List<RestaurantEntity> results = restaurantRepository.findAll();
-      log.info("Total restaurants fetched from repository: {}", results.size());
-
-      ModelMapper modelMapper = modelMapperProvider.get();
-      for (RestaurantEntity res : results) {
-        log.info("Checking if restaurant {} is close by and open", res.getRestaurantId());
+  private void refreshCell(String cacheKey, GeoHash geoHash) {
+    long generation = nearCache.currentGeneration();
+    // Keyed apart from misses: a refresh ends with null when another instance holds the fill
+    // lock, and a miss must not share that.
+    cacheFillFlight.submit(REFRESH_FLIGHT_PREFIX + cacheKey,
+        () -> fillCellCandidates(cacheKey, geoHash, true), taskExecutor).whenComplete((restaurants, e) -> {
+          if (e != null) {
+            log.warn("Background refresh failed for key: {}", cacheKey, e);
+          } else if (restaurants != null) {
+            nearCache.put(cacheKey, generation, restaurants);
+          }
+        });
+  }
 
-        if (isRestaurantCloseByAndOpen(res, currentTime, latitude, longitude, servingRadiusInKms)) {
-          Restaurant temp = modelMapper.map(res, Restaurant.class);
-          restaurants.add(temp);
-          log.info("Restaurant {} is added to the list", res.getRestaurantId());
-        } else {
-          log.info("Restaurant {} is not close by or not open", res.getRestaurantId());
+  /**
+   * Computes a cell and caches it.
+   * @param refresh true if a cached value is being served meanwhile.
+   * @return the cell's restaurants, or null on a refresh another instance is already doing.
+   */
+  private List<Restaurant> fillCellCandidates(String cacheKey, GeoHash geoHash,
+      boolean refresh) {
+    // Empty if another instance holds the lock, null if Redis is unavailable.
+    Optional<String> lock = redisCacheAccess.execute(
+        jedis -> Optional.ofNullable(cacheFillLock.tryAcquire(jedis, cacheKey)), () -> null);
+    if (lock != null && !lock.isPresent()) {
+      if (refresh) {
+        return null;
+      }
+      // Another instance is filling this key, give it a moment instead of recomputing.
+      CachedCell filled = cacheFillLock.awaitValue(() -> redisCacheAccess.execute(
+          jedis -> readFreshCell(jedis, cacheKey), () -> null));
+      if (filled != null) {
+        log.debug("Cache filled by another instance for key: {}", cacheKey);
+        return assembleCell(filled);
+      }
+    }
+    final String lockToken = lock == null ? null : lock.orElse(null);
+
+    boolean written = false;
+    try {
+      long startNanos = System.nanoTime();
+      WGS84Point center = geoHash.getBoundingBoxCenterPoint();
+      List<Restaurant> restaurants = findRestaurantsAround(center.getLatitude(),
+          center.getLongitude(), cellRadiusInKms + RestaurantCache.cellSlackInKms(geoHash));
+      long computeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+      // Cache the result off the request path. The fill lock is released once it is written,
+      // so that instances waiting on it find the cell.
+      written = cacheWriteBehind.submit(pipeline -> {
+        restaurantCache.appendCell(pipeline, cacheKey, restaurants, computeMillis);
+        if (lockToken != null) {
+          cacheFillLock.appendRelease(pipeline, cacheKey, lockToken);
         }
+      });
+      return restaurants;
+    } finally {
+      if (lockToken != null && !written) {
+        redisCacheAccess.run(jedis -> cacheFillLock.release(jedis, cacheKey, lockToken));
+      }
+    }
+  }
+
+  private List<Restaurant> findRestaurantsAround(double latitude, double longitude,
+      double radiusInKms) {
+    List<RestaurantEntity> results = PipelineMetrics.timeMongo("restaurants.findAll",
+        restaurantRepository::findAll);
+    log.debug("Total restaurants fetched from repository: {}", results.size());
+
+    long distanceNanos = System.nanoTime();
+    List<RestaurantEntity> around = new ArrayList<>();
+    for (RestaurantEntity res : results) {
+      if (GeoUtils.findDistanceInKm(latitude, longitude, res.getLatitude(), res.getLongitude())
+          < radiusInKms) {
+        around.add(res);
+      }
+    }
+    long mappingNanos = System.nanoTime();
+    PipelineMetrics.recordStage("distance", mappingNanos - distanceNanos);
+    List<Restaurant> restaurants = RestaurantMapper.toRestaurants(around);
+    PipelineMetrics.recordStage("mapping", System.nanoTime() - mappingNanos);
+    log.debug("Total restaurants found within {} km: {}", radiusInKms, restaurants.size());
+    return restaurants;
+  }
+
+  private List<Restaurant> filterCloseByAndOpen(List<Restaurant> candidates, Double latitude,
+      Double longitude, LocalTime currentTime, Double servingRadiusInKms) {
+    FilterEvent event = new FilterEvent();
+    RequestContext.summary().addScanned(candidates.size());
+    List<Restaurant> restaurants = new ArrayList<>();
+    for (Restaurant restaurant : candidates) {
+      if (isOpenNow(currentTime, restaurant.getOpensAt(), restaurant.getClosesAt())
+          && GeoUtils.findDistanceInKm(latitude, longitude, restaurant.getLatitude(),
+              restaurant.getLongitude()) < servingRadiusInKms) {
+        restaurants.add(restaurant);
       }
+    }
+    event.finish(latitude, longitude, candidates.size(), restaurants.size());
+    log.debug("Total restaurants found close by and open: {}", restaurants.size());
+    return restaurants;
+  }
 
-      log.info("Total restaurants found close by and open: {}", restaurants.size());
+  /**
+   * Reads a cached cell that is not stale.
+   * @return the cell and its records or null if the cell is not cached or stale.
+   */
+  private CachedCell readFreshCell(Jedis jedis, String cacheKey) {
+    CellEntry cell = restaurantCache.getCell(jedis, cacheKey);
+    if (cell == null || cell.isStale(System.currentTimeMillis())) {
+      return null;
+    }
+    return readRecords(jedis, cell);
+  }
+
+  private CachedCell readRecords(Jedis jedis, CellEntry cell) {
+    return new CachedCell(cell, restaurantCache.getRestaurants(jedis, cell.getRestaurantIds()));
+  }
 
-      // Cache the result
-      jedis.setex(cacheKey, RedisConfiguration.REDIS_ENTRY_EXPIRY_IN_SECONDS, objectMapper.writeValueAsString(restaurants));
-    } catch (IOException e) {
-      log.error("Error processing JSON for cache", e);
+  /**
+   * Assembles a cached cell from its id list and the per-restaurant records read with it,
+   * reloading the missing ones. Called without a Redis connection held.
+   */
+  private List<Restaurant> assembleCell(CachedCell cached) {
+    List<String> ids = cached.cell.getRestaurantIds();
+    List<Restaurant> records = cached.records;
+
+    List<String> missingIds = new ArrayList<>();
+    for (int i = 0; i < ids.size(); i++) {
+      if (records.get(i) == null) {
+        missingIds.add(ids.get(i));
+      }
+    }
+    Map<String, Restaurant> reloaded = new HashMap<>();
+    if (!missingIds.isEmpty()) {
+      // Records evicted or invalidated on their own: the cell is still valid, reload them.
+      List<Restaurant> restaurants = new ArrayList<>();
+      for (RestaurantEntity entity
+          : repositoryLookupBatcher.findRestaurantsByRestaurantIdIn(missingIds)) {
+        Restaurant restaurant = RestaurantMapper.toRestaurant(entity);
+        restaurants.add(restaurant);
+        reloaded.put(restaurant.getRestaurantId(), restaurant);
+      }
+      cacheWriteBehind.submit(
+          pipeline -> restaurantCache.appendRestaurants(pipeline, restaurants));
     }
 
+    List<Restaurant> restaurants = new ArrayList<>(ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      Restaurant restaurant = records.get(i) != null ? records.get(i) : reloaded.get(ids.get(i));
+      // Restaurants removed from the catalogue since the cell was cached are left out.
+      if (restaurant != null) {
+        restaurants.add(restaurant);
+      }
+    }
     return restaurants;
   }
 
   private boolean isRestaurantCloseByAndOpen(RestaurantEntity restaurantEntity,
       LocalTime currentTime, Double latitude, Double longitude, Double servingRadiusInKms) {
+    RequestSummary summary = RequestContext.summary();
+    summary.addScanned(1);
     if (isOpenNow(currentTime, restaurantEntity)) {
       double distance = GeoUtils.findDistanceInKm(latitude, longitude,
           restaurantEntity.getLatitude(), restaurantEntity.getLongitude());
       boolean isCloseBy = distance < servingRadiusInKms;
 
-      log.info("Restaurant {} is open now. Distance from the user: {}. Is within serving radius: {}",
-          restaurantEntity.getRestaurantId(), distance, isCloseBy);
-
+      if (summary.isVerbose()) {
+        log.info("Restaurant {} is open now. Distance from the user: {}. Is within serving radius: {}",
+            restaurantEntity.getRestaurantId(), distance, isCloseBy);
+      }
       return isCloseBy;
     } else {
-      log.info("Restaurant {} is not open now", restaurantEntity.getRestaurantId());
+      if (summary.isVerbose()) {
+        log.info("Restaurant {} is not open now", restaurantEntity.getRestaurantId());
+      }
       return false;
     }
   }
@@ -152,30 +482,37 @@ public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryServ
   public List<Restaurant> findRestaurantsByName(Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms) {
 
-        ModelMapper modelMapper = modelMapperProvider.get();
         Set<String> restaurantSet = new HashSet<>();
         List<Restaurant> restaurantList = new ArrayList<>();
-        Optional<List<RestaurantEntity>> optionalExactRestaurantEntityList = restaurantRepository.findRestaurantsByNameExact(searchString);
-        if (optionalExactRestaurantEntityList.isPresent()) {
-          List<RestaurantEntity> restaurantEntityList = optionalExactRestaurantEntityList.get();
-          for (RestaurantEntity restaurantEntity : restaurantEntityList) {
-              if (isRestaurantCloseByAndOpen(restaurantEntity, currentTime,latitude, longitude, servingRadiusInKms) &&!restaurantSet.contains(restaurantEntity.getRestaurantId())) {
-                  restaurantList.add(modelMapper.map(restaurantEntity,
-  Restaurant.class));
-                  restaurantSet.add(restaurantEntity.getRestaurantId());
-              }
-          }
+        if (RequestContext.isExpired()) {
+          return restaurantList;
         }
-        Optional<List<RestaurantEntity>> optionalInexactRestaurantEntityList = restaurantRepository.findRestaurantsByName(searchString);
-        if (optionalInexactRestaurantEntityList.isPresent()) {
-          List<RestaurantEntity> restaurantEntityList = optionalInexactRestaurantEntityList.get();
-          for (RestaurantEntity restaurantEntity : restaurantEntityList) {
-              if (isRestaurantCloseByAndOpen(restaurantEntity, currentTime,latitude, longitude, servingRadiusInKms) && !restaurantSet.contains(restaurantEntity.getRestaurantId())) {
-                  restaurantList.add(modelMapper.map(restaurantEntity,
-  Restaurant.class));
-                  restaurantSet.add(restaurantEntity.getRestaurantId());
-              }
-          }
+        // Regexes as the repository queries had them, with the search string bound as is.
+        List<RestaurantEntity> exactRestaurantEntityList = findWithinDeadline(
+            "restaurants.byNameExact",
+            includeFields(new Query(Criteria.where("name").regex("^" + searchString + "$", "i")),
+                RequestContext.fields()),
+            RestaurantEntity.class);
+        for (RestaurantEntity restaurantEntity : exactRestaurantEntityList) {
+            if (isRestaurantCloseByAndOpen(restaurantEntity, currentTime,latitude, longitude, servingRadiusInKms) &&!restaurantSet.contains(restaurantEntity.getRestaurantId())) {
+                restaurantList.add(RestaurantMapper.toRestaurant(restaurantEntity));
+                restaurantSet.add(restaurantEntity.getRestaurantId());
+            }
+        }
+        if (RequestContext.isExpired()) {
+          // Out of time, the exact matches are the best we have.
+          return restaurantList;
+        }
+        List<RestaurantEntity> inexactRestaurantEntityList = findWithinDeadline(
+            "restaurants.byName",
+            includeFields(new Query(Criteria.where("name").regex(".*" + searchString + ".*", "i")),
+                RequestContext.fields()),
+            RestaurantEntity.class);
+        for (RestaurantEntity restaurantEntity : inexactRestaurantEntityList) {
+            if (isRestaurantCloseByAndOpen(restaurantEntity, currentTime,latitude, longitude, servingRadiusInKms) && !restaurantSet.contains(restaurantEntity.getRestaurantId())) {
+                restaurantList.add(RestaurantMapper.toRestaurant(restaurantEntity));
+                restaurantSet.add(restaurantEntity.getRestaurantId());
+            }
         }
         return restaurantList;
   }
@@ -195,14 +532,14 @@ public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryServ
         for (Pattern pattern : patterns) {
           query.addCriteria(Criteria.where("attributes").regex(pattern));
         }
-        List<RestaurantEntity> restaurantEntityList = mongoTemplate.find(query, RestaurantEntity.class);
+        List<RestaurantEntity> restaurantEntityList = findWithinDeadline(
+            "restaurants.byAttributes", includeFields(query, RequestContext.fields()),
+            RestaurantEntity.class);
         List<Restaurant> restaurantList = new ArrayList<>();
-        ModelMapper modelMapper = modelMapperProvider.get();
         for (RestaurantEntity restaurantEntity : restaurantEntityList) {
           if (isRestaurantCloseByAndOpen(restaurantEntity, currentTime,
             latitude, longitude, servingRadiusInKms)) {
-            restaurantList.add(modelMapper.map(restaurantEntity,
-            Restaurant.class));
+            restaurantList.add(RestaurantMapper.toRestaurant(restaurantEntity));
           }
         }
         return restaurantList;
@@ -216,12 +553,16 @@ public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryServ
       Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms) {
 
+        if (RequestContext.isExpired()) {
+          return new ArrayList<>();
+        }
         String regex = String.join("|", Arrays.asList(searchString.split("")));
-        Optional<List<ItemEntity>> optionalExactItems = itemRepository.findItemsByNameExact(searchString);
-        Optional<List<ItemEntity>> optionalInexactItems = itemRepository.findItemsByNameInexact(regex);
-        List<ItemEntity> itemEntityList = optionalExactItems.orElseGet(ArrayList::new);
-        List<ItemEntity> inexactItemEntityList = optionalInexactItems.orElseGet(ArrayList::new);
-        itemEntityList.addAll(inexactItemEntityList);
+        List<ItemEntity> itemEntityList = findWithinDeadline("items.byNameExact",
+            itemIdsOnly(new Query(Criteria.where("name").regex("^" + searchString + "$", "i"))),
+            ItemEntity.class);
+        itemEntityList.addAll(findWithinDeadline("items.byNameInexact",
+            itemIdsOnly(new Query(Criteria.where("name").regex(".*" + regex + ".*", "i"))),
+            ItemEntity.class));
         return getRestaurantListServingItems(latitude, longitude, currentTime, servingRadiusInKms, itemEntityList);
   }
 
@@ -236,31 +577,70 @@ public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryServ
         for (Pattern pattern : patterns) {
           query.addCriteria(Criteria.where("attributes").regex(pattern));
         }
-        List<ItemEntity> itemEntityList = mongoTemplate.find(query,ItemEntity.class);
+        List<ItemEntity> itemEntityList = findWithinDeadline(
+            "items.byAttributes", itemIdsOnly(query), ItemEntity.class);
         return getRestaurantListServingItems(latitude, longitude,currentTime, servingRadiusInKms,itemEntityList);
   }
 
   private List<Restaurant> getRestaurantListServingItems(Double latitude, Double longitude, LocalTime currentTime, Double servingRadiusInKms, List<ItemEntity>itemEntityList) {
+    if (RequestContext.isExpired()) {
+      return new ArrayList<>();
+    }
     List<String> itemIdList = itemEntityList.stream().map(ItemEntity::getItemId).collect(Collectors.toList());
-    Optional<List<MenuEntity>> optionalMenuEntityList = menuRepository.findMenusByItemsItemIdIn(itemIdList);
-    Optional<List<RestaurantEntity>> optionalRestaurantEntityList = Optional.empty();
-    if (optionalMenuEntityList.isPresent()) {
-      List<MenuEntity> menuEntityList = optionalMenuEntityList.get();
-      List<String> restaurantIdList = menuEntityList.stream().map(MenuEntity::getRestaurantId).collect(Collectors.toList());
-      optionalRestaurantEntityList = restaurantRepository.findRestaurantsByRestaurantIdIn(restaurantIdList);
+    // Both lookups are batched with the ones of concurrent searches.
+    List<MenuEntity> menuEntityList = repositoryLookupBatcher.findMenusByItemsItemIdIn(itemIdList);
+    List<String> restaurantIdList = menuEntityList.stream().map(MenuEntity::getRestaurantId).collect(Collectors.toList());
+    if (RequestContext.isExpired()) {
+      return new ArrayList<>();
     }
-    List<Restaurant> restaurantList = new ArrayList<>();
-    ModelMapper modelMapper = modelMapperProvider.get();
-    if (optionalRestaurantEntityList.isPresent()) {
-      List<RestaurantEntity> restaurantEntityList = optionalRestaurantEntityList.get();
-      List<RestaurantEntity> restaurantEntitiesFiltered = new ArrayList<>();
-      for (RestaurantEntity restaurantEntity : restaurantEntityList) {
-          if (isRestaurantCloseByAndOpen(restaurantEntity, currentTime, latitude, longitude,servingRadiusInKms)) {
-              restaurantEntitiesFiltered.add(restaurantEntity);
-          }
+    List<RestaurantEntity> restaurantEntityList = repositoryLookupBatcher.findRestaurantsByRestaurantIdIn(restaurantIdList);
+
+    List<RestaurantEntity> restaurantEntitiesFiltered = new ArrayList<>();
+    for (RestaurantEntity restaurantEntity : restaurantEntityList) {
+        if (isRestaurantCloseByAndOpen(restaurantEntity, currentTime, latitude, longitude,servingRadiusInKms)) {
+            restaurantEntitiesFiltered.add(restaurantEntity);
+        }
+    }
+    return RestaurantMapper.toRestaurants(restaurantEntitiesFiltered);
+  }
+
+  // Item searches only need the ids of the items, to look up the menus serving them.
+  private static Query itemIdsOnly(Query query) {
+    query.fields().include("itemId").exclude("_id");
+    return query;
+  }
+
+  /**
+   * Runs the query with the current request's remaining budget as Mongo's maxTimeMS.
+   * @return matching documents, or empty list if the request ran out of time.
+   */
+  private <T> List<T> findWithinDeadline(String queryName, Query query, Class<T> entityClass) {
+    if (RequestContext.hasDeadline()) {
+      long remainingMillis = RequestContext.remainingMillis();
+      if (remainingMillis <= 0) {
+        return new ArrayList<>();
       }
-      restaurantList = restaurantEntitiesFiltered.stream().map(restaurantEntity -> modelMapper.map(restaurantEntity,Restaurant.class)).collect(Collectors.toList());
+      query.maxTimeMsec(remainingMillis);
+    }
+    try {
+      return PipelineMetrics.timeMongo(queryName, () -> mongoTemplate.find(query, entityClass));
+    } catch (DataAccessException e) {
+      if (RequestContext.isExpired()) {
+        log.warn("Deadline exceeded while querying {}", entityClass.getSimpleName());
+        return new ArrayList<>();
+      }
+      throw e;
+    }
+  }
+
+  private static class CachedCell {
+    private final CellEntry cell;
+    // In the order of the cell's ids, null where missing.
+    private final List<Restaurant> records;
+
+    CachedCell(CellEntry cell, List<Restaurant> records) {
+      this.cell = cell;
+      this.records = records;
     }
-    return restaurantList;
   }
-}
\ No newline at end of file
+}
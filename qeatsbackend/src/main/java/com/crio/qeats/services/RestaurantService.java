@@ -9,7 +9,9 @@ package com.crio.qeats.services;
 
 import com.crio.qeats.exchanges.GetRestaurantsRequest;
 import com.crio.qeats.exchanges.GetRestaurantsResponse;
+import com.crio.qeats.dto.Restaurant;
 import java.time.LocalTime;
+import java.util.function.Consumer;
 
 public interface RestaurantService {
 
@@ -27,6 +29,17 @@ public interface RestaurantService {
   GetRestaurantsResponse findAllRestaurantsCloseBy(
       GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime);
 
+  /**
+   * Streaming variant of {@link #findAllRestaurantsCloseBy}: the restaurants are handed to the
+   * consumer as they are found instead of being collected into a response.
+   * @param getRestaurantsRequest valid lat/long and the fields to return, if not all
+   * @param currentTime current time.
+   * @param servingRadiusInKms radius to search, or null for the serving radius of the time
+   * @param consumer receives the open restaurants within the radius, in no order
+   */
+  void streamRestaurantsCloseBy(GetRestaurantsRequest getRestaurantsRequest,
+      LocalTime currentTime, Double servingRadiusInKms, Consumer<Restaurant> consumer);
+
   /**
    * Get the restaurants by processing the query.
    * -Ordering rules
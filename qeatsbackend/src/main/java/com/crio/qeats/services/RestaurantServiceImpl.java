@@ -7,13 +7,19 @@
 
 package com.crio.qeats.services;
 
+import com.crio.qeats.configs.ExecutorConfiguration;
 import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.dto.RestaurantFields;
 import com.crio.qeats.exchanges.GetRestaurantsRequest;
 import com.crio.qeats.exchanges.GetRestaurantsResponse;
 import com.crio.qeats.repositoryservices.RestaurantRepositoryService;
+import com.crio.qeats.telemetry.PipelineMetrics;
+import com.crio.qeats.telemetry.RepositoryCallEvent;
+import com.crio.qeats.utils.RequestContext;
 import java.time.LocalTime;
 import lombok.extern.slf4j.Slf4j;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -21,9 +27,15 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -35,30 +47,31 @@ public class RestaurantServiceImpl implements RestaurantService {
   @Autowired
   private RestaurantRepositoryService restaurantRepositoryService;
 
+  @Autowired
+  @Qualifier(ExecutorConfiguration.TASK_EXECUTOR)
+  private ExecutorService taskExecutor;
+
 
   @Override
   public GetRestaurantsResponse findAllRestaurantsCloseBy(
       GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime) {
 
-    log.info("findAllRestaurantsCloseBy called with request: {} at time: {}", getRestaurantsRequest, currentTime);
+    log.debug("findAllRestaurantsCloseBy called with request: {} at time: {}", getRestaurantsRequest, currentTime);
 
     boolean isPeakHours = isPeakHours(currentTime);
-    log.info("isPeakHours result: {}", isPeakHours);
 
     double serviceRadius = isPeakHours ? peakHoursServingRadiusInKms : normalHoursServingRadiusInKms;
 
     try {
-      log.info("Calling restaurantRepositoryService with latitude: {}, longitude: {}, currentTime: {}, serviceRadius: {}",
+      log.debug("Calling restaurantRepositoryService with latitude: {}, longitude: {}, currentTime: {}, serviceRadius: {}",
                getRestaurantsRequest.getLatitude(), getRestaurantsRequest.getLongitude(), currentTime, serviceRadius);
 
-      List<Restaurant> restaurants = restaurantRepositoryService.findAllRestaurantsCloseBy(
-          getRestaurantsRequest.getLatitude(), getRestaurantsRequest.getLongitude(), currentTime, serviceRadius);
-
-      log.info("restaurantRepositoryService returned: {}", restaurants);
+      List<Restaurant> restaurants = callRepository("findAllRestaurantsCloseBy",
+          getRestaurantsRequest, () -> restaurantRepositoryService.findAllRestaurantsCloseBy(
+          getRestaurantsRequest.getLatitude(), getRestaurantsRequest.getLongitude(), currentTime, serviceRadius));
 
       GetRestaurantsResponse response = new GetRestaurantsResponse();
       response.setRestaurants(restaurants);
-      log.info("findAllRestaurantsCloseBy returning response: {}", response);
 
       return response;
     } catch (Exception e) {
@@ -67,6 +80,18 @@ public class RestaurantServiceImpl implements RestaurantService {
     }
   }
 
+  @Override
+  public void streamRestaurantsCloseBy(GetRestaurantsRequest getRestaurantsRequest,
+      LocalTime currentTime, Double servingRadiusInKms, Consumer<Restaurant> consumer) {
+    if (servingRadiusInKms == null) {
+      servingRadiusInKms = isPeakHours(currentTime)
+          ? peakHoursServingRadiusInKms : normalHoursServingRadiusInKms;
+    }
+    restaurantRepositoryService.streamRestaurantsCloseBy(getRestaurantsRequest.getLatitude(),
+        getRestaurantsRequest.getLongitude(), currentTime, servingRadiusInKms,
+        RestaurantFields.parse(getRestaurantsRequest.getFields()), consumer);
+  }
+
   private boolean isPeakHours(LocalTime currentTime) {
     LocalTime peakStartMorning = LocalTime.of(8, 0);
     LocalTime peakEndMorning = LocalTime.of(10, 0);
@@ -99,24 +124,21 @@ public class RestaurantServiceImpl implements RestaurantService {
         String searchFor = getRestaurantsRequest.getSearchFor();
         List<List<Restaurant>> listOfRestaurantLists = new ArrayList<>();
         if (!searchFor.isEmpty()) {
-          listOfRestaurantLists.add(restaurantRepositoryService.findRestaurantsByName(getRestaurantsRequest.getLatitude(),getRestaurantsRequest.getLongitude(), searchFor, currentTime,servingRadiusInKms));
-
-          listOfRestaurantLists.add(restaurantRepositoryService.findRestaurantsByAttributes(getRestaurantsRequest.getLatitude(),getRestaurantsRequest.getLongitude(), searchFor,currentTime, servingRadiusInKms));
-          listOfRestaurantLists.add(restaurantRepositoryService.findRestaurantsByItemName(getRestaurantsRequest.getLatitude(),getRestaurantsRequest.getLongitude(), searchFor,currentTime, servingRadiusInKms));
-
-          listOfRestaurantLists.add(restaurantRepositoryService.findRestaurantsByItemName(getRestaurantsRequest.getLatitude(),getRestaurantsRequest.getLongitude(), searchFor,currentTime, servingRadiusInKms));
-          listOfRestaurantLists.add(restaurantRepositoryService.findRestaurantsByItemAttributes(getRestaurantsRequest.getLatitude(),getRestaurantsRequest.getLongitude(), searchFor,currentTime, servingRadiusInKms));
-          Set<String> restaurantSet = new HashSet<>();
-          List<Restaurant> restaurantList = new ArrayList<>();
-          for (List<Restaurant> restoList : listOfRestaurantLists) {
-            for (Restaurant restaurant : restoList) {
-              if (!restaurantSet.contains(restaurant.getRestaurantId())) {
-                restaurantList.add(restaurant);
-                restaurantSet.add(restaurant.getRestaurantId());
-              }
+          List<Supplier<List<Restaurant>>> sources = Arrays.asList(
+              () -> callRepository("findRestaurantsByName", getRestaurantsRequest, () -> restaurantRepositoryService.findRestaurantsByName(getRestaurantsRequest.getLatitude(),getRestaurantsRequest.getLongitude(), searchFor, currentTime,servingRadiusInKms)),
+              () -> callRepository("findRestaurantsByAttributes", getRestaurantsRequest, () -> restaurantRepositoryService.findRestaurantsByAttributes(getRestaurantsRequest.getLatitude(),getRestaurantsRequest.getLongitude(), searchFor,currentTime, servingRadiusInKms)),
+              () -> callRepository("findRestaurantsByItemName", getRestaurantsRequest, () -> restaurantRepositoryService.findRestaurantsByItemName(getRestaurantsRequest.getLatitude(),getRestaurantsRequest.getLongitude(), searchFor,currentTime, servingRadiusInKms)),
+              () -> callRepository("findRestaurantsByItemAttributes", getRestaurantsRequest, () -> restaurantRepositoryService.findRestaurantsByItemAttributes(getRestaurantsRequest.getLatitude(),getRestaurantsRequest.getLongitude(), searchFor,currentTime, servingRadiusInKms)));
+          for (Supplier<List<Restaurant>> source : sources) {
+            if (RequestContext.isExpired()) {
+              // Out of time, return what the earlier (higher ranked) sources found.
+              log.warn("Search deadline exceeded after {} of {} sources",
+                  listOfRestaurantLists.size(), sources.size());
+              break;
             }
+            listOfRestaurantLists.add(source.get());
           }
-          return new GetRestaurantsResponse(restaurantList);
+          return new GetRestaurantsResponse(mergeDistinct(listOfRestaurantLists));
       } else {
         return new GetRestaurantsResponse(new ArrayList<>());
       }
@@ -146,54 +168,84 @@ public class RestaurantServiceImpl implements RestaurantService {
       return new GetRestaurantsResponse(new ArrayList<>());
     }
 
-    // Execute queries asynchronously
-    CompletableFuture<List<Restaurant>> byNameFuture = CompletableFuture.supplyAsync(() ->
-      restaurantRepositoryService.findRestaurantsByName(getRestaurantsRequest.getLatitude(), getRestaurantsRequest.getLongitude(), searchFor, currentTime, servingRadiusInKms)
-    );
+    // Execute queries asynchronously on the shared blocking-task executor.
+    // Each task carries the request context, so it sees the request's deadline.
+    CompletableFuture<List<Restaurant>> byNameFuture = supplySource("name", "findRestaurantsByName", getRestaurantsRequest,
+        () -> restaurantRepositoryService.findRestaurantsByName(getRestaurantsRequest.getLatitude(), getRestaurantsRequest.getLongitude(), searchFor, currentTime, servingRadiusInKms));
 
-    CompletableFuture<List<Restaurant>> byAttributesFuture = CompletableFuture.supplyAsync(() ->
-      restaurantRepositoryService.findRestaurantsByAttributes(getRestaurantsRequest.getLatitude(), getRestaurantsRequest.getLongitude(), searchFor, currentTime, servingRadiusInKms)
-    );
+    CompletableFuture<List<Restaurant>> byAttributesFuture = supplySource("attributes", "findRestaurantsByAttributes", getRestaurantsRequest,
+        () -> restaurantRepositoryService.findRestaurantsByAttributes(getRestaurantsRequest.getLatitude(), getRestaurantsRequest.getLongitude(), searchFor, currentTime, servingRadiusInKms));
 
-    CompletableFuture<List<Restaurant>> byItemNameFuture = CompletableFuture.supplyAsync(() ->
-      restaurantRepositoryService.findRestaurantsByItemName(getRestaurantsRequest.getLatitude(), getRestaurantsRequest.getLongitude(), searchFor, currentTime, servingRadiusInKms)
-    );
+    CompletableFuture<List<Restaurant>> byItemNameFuture = supplySource("itemName", "findRestaurantsByItemName", getRestaurantsRequest,
+        () -> restaurantRepositoryService.findRestaurantsByItemName(getRestaurantsRequest.getLatitude(), getRestaurantsRequest.getLongitude(), searchFor, currentTime, servingRadiusInKms));
 
-    CompletableFuture<List<Restaurant>> byItemAttributesFuture = CompletableFuture.supplyAsync(() ->
-      restaurantRepositoryService.findRestaurantsByItemAttributes(getRestaurantsRequest.getLatitude(), getRestaurantsRequest.getLongitude(), searchFor, currentTime, servingRadiusInKms)
-    );
+    CompletableFuture<List<Restaurant>> byItemAttributesFuture = supplySource("itemAttributes", "findRestaurantsByItemAttributes", getRestaurantsRequest,
+        () -> restaurantRepositoryService.findRestaurantsByItemAttributes(getRestaurantsRequest.getLatitude(), getRestaurantsRequest.getLongitude(), searchFor, currentTime, servingRadiusInKms));
 
     // Combine all futures
     CompletableFuture<Void> allFutures = CompletableFuture.allOf(
       byNameFuture, byAttributesFuture, byItemNameFuture, byItemAttributesFuture
     );
 
-    // Gather results
-    List<Restaurant> combinedResults = new ArrayList<>();
-    Set<String> restaurantSet = new HashSet<>();
-
     try {
-      allFutures.get();
-
-      addToRestaurantList(byNameFuture.get(), combinedResults, restaurantSet);
-      addToRestaurantList(byAttributesFuture.get(), combinedResults, restaurantSet);
-      addToRestaurantList(byItemNameFuture.get(), combinedResults, restaurantSet);
-      addToRestaurantList(byItemAttributesFuture.get(), combinedResults, restaurantSet);
-
+      allFutures.get(RequestContext.remainingMillis(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      log.warn("Search deadline exceeded, returning results of the sources that finished");
     } catch (InterruptedException | ExecutionException e) {
       log.error("Exception occurred while fetching restaurants asynchronously", e);
     }
 
-    return new GetRestaurantsResponse(combinedResults);
+    // Sources that failed or did not finish in time are left out, in ranking order.
+    List<List<Restaurant>> listOfRestaurantLists = new ArrayList<>();
+    for (CompletableFuture<List<Restaurant>> future : Arrays.asList(byNameFuture,
+        byAttributesFuture, byItemNameFuture, byItemAttributesFuture)) {
+      if (future.isDone() && !future.isCompletedExceptionally()) {
+        listOfRestaurantLists.add(future.join());
+      }
+    }
+
+    return new GetRestaurantsResponse(mergeDistinct(listOfRestaurantLists));
   }
 
-  private void addToRestaurantList(List<Restaurant> restaurants, List<Restaurant> combinedResults, Set<String> restaurantSet) {
-    for (Restaurant restaurant : restaurants) {
-      if (!restaurantSet.contains(restaurant.getRestaurantId())) {
-        combinedResults.add(restaurant);
-        restaurantSet.add(restaurant.getRestaurantId());
+  // Runs a search source on the task executor, with the request context, timed on its own as
+  // qeats.search.source{source}.
+  private CompletableFuture<List<Restaurant>> supplySource(String source, String method,
+      GetRestaurantsRequest getRestaurantsRequest, Supplier<List<Restaurant>> search) {
+    return CompletableFuture.supplyAsync(RequestContext.propagate(() ->
+        PipelineMetrics.timeSearchSource(source,
+            () -> callRepository(method, getRestaurantsRequest, search))),
+        taskExecutor);
+  }
+
+  // Calls the repository service, as a RepositoryCallEvent in flight recordings.
+  private List<Restaurant> callRepository(String method,
+      GetRestaurantsRequest getRestaurantsRequest, Supplier<List<Restaurant>> call) {
+    RepositoryCallEvent event = new RepositoryCallEvent();
+    List<Restaurant> restaurants = call.get();
+    event.finish(method, getRestaurantsRequest.getLatitude(),
+        getRestaurantsRequest.getLongitude(), getRestaurantsRequest.getSearchFor(),
+        restaurants.size());
+    return restaurants;
+  }
+
+  /**
+   * Concatenates the results of the search sources, highest ranked first, keeping the first
+   * occurrence of each restaurant.
+   */
+  static List<Restaurant> mergeDistinct(List<List<Restaurant>> listOfRestaurantLists) {
+    int size = 0;
+    for (List<Restaurant> restaurants : listOfRestaurantLists) {
+      size += restaurants.size();
+    }
+    List<Restaurant> merged = new ArrayList<>(size);
+    Set<String> restaurantIds = new HashSet<>(size * 4 / 3 + 1);
+    for (List<Restaurant> restaurants : listOfRestaurantLists) {
+      for (Restaurant restaurant : restaurants) {
+        if (restaurantIds.add(restaurant.getRestaurantId())) {
+          merged.add(restaurant);
+        }
       }
     }
+    return merged;
   }
 }
-
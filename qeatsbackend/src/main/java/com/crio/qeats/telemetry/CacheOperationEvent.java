@@ -0,0 +1,44 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A read or write of the restaurants caches, near or Redis.
+ */
+@Name("com.crio.qeats.CacheOperation")
+@Label("QEats Cache Operation")
+public class CacheOperationEvent extends StageEvent {
+
+  @Label("Key")
+  String key;
+
+  @Label("Hits")
+  int hits;
+
+  @Label("Misses")
+  int misses;
+
+  /**
+   * Commits the event if a recording wants it.
+   *
+   * @param operation cache and operation, as in redis.get-cell
+   * @param key key read or written, or the first of them
+   */
+  public void finish(String operation, String key, int hits, int misses) {
+    end();
+    if (shouldCommit()) {
+      stage = operation;
+      this.key = key;
+      this.hits = hits;
+      this.misses = misses;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import ch.hsr.geohash.GeoHash;
+import ch.hsr.geohash.WGS84Point;
+import com.crio.qeats.exchanges.GetRestaurantsRequest;
+import com.crio.qeats.services.RestaurantService;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Warms a starting instance up with the hot keys recorded by the fleet.
+ *
+ * <p>The first pass over the keys fills the caches and pulls the Mongo documents and indexes
+ * they touch into memory. Further passes give the JIT the hot paths to compile. Until it is
+ * done, {@link WarmupHealthIndicator} reports the instance out of service.
+ */
+@Component
+@Log4j2
+public class CacheWarmer {
+
+  @Autowired
+  private HotKeyTracker hotKeyTracker;
+
+  @Autowired
+  private RestaurantService restaurantService;
+
+  @Value("${qeats.warmup.enabled:true}")
+  private boolean enabled;
+
+  @Value("${qeats.warmup.keys:50}")
+  private int keys;
+
+  @Value("${qeats.warmup.iterations:20}")
+  private int iterations;
+
+  @Value("${qeats.warmup.max-millis:30000}")
+  private long maxMillis;
+
+  private volatile boolean done;
+
+  public boolean isDone() {
+    return done || !enabled;
+  }
+
+  @EventListener
+  public void onApplicationReady(ApplicationReadyEvent event) {
+    if (!enabled) {
+      return;
+    }
+    Thread warmer = new Thread(this::warmUp, "cache-warmer");
+    warmer.setDaemon(true);
+    warmer.start();
+  }
+
+  void warmUp() {
+    long startNanos = System.nanoTime();
+    long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(maxMillis);
+    try {
+      List<GetRestaurantsRequest> requests = new ArrayList<>();
+      for (String cell : hotKeyTracker.loadPersisted(HotKeyTracker.CELLS, keys).keySet()) {
+        WGS84Point center = GeoHash.fromGeohashString(cell).getBoundingBoxCenterPoint();
+        requests.add(new GetRestaurantsRequest(center.getLatitude(), center.getLongitude()));
+      }
+      for (String search : hotKeyTracker.loadPersisted(HotKeyTracker.SEARCHES, keys).keySet()) {
+        int separator = search.indexOf(HotKeyTracker.SEARCH_SEPARATOR);
+        WGS84Point center = GeoHash.fromGeohashString(search.substring(0, separator))
+            .getBoundingBoxCenterPoint();
+        requests.add(new GetRestaurantsRequest(center.getLatitude(), center.getLongitude(),
+            search.substring(separator + 1)));
+      }
+
+      int passes = 0;
+      while (passes < iterations && !requests.isEmpty() && System.nanoTime() < deadlineNanos) {
+        for (GetRestaurantsRequest request : requests) {
+          warm(request);
+        }
+        passes++;
+      }
+      log.info("Warmed up {} hot keys in {} passes and {} ms", requests.size(), passes,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    } catch (RuntimeException e) {
+      log.warn("Warmup failed, serving cold", e);
+    } finally {
+      done = true;
+    }
+  }
+
+  private void warm(GetRestaurantsRequest request) {
+    try {
+      if (request.getSearchFor() == null) {
+        restaurantService.findAllRestaurantsCloseBy(request, LocalTime.now());
+      } else {
+        restaurantService.findRestaurantsBySearchQuery(request, LocalTime.now());
+      }
+    } catch (RuntimeException e) {
+      log.debug("Warmup request {} failed", request, e);
+    }
+  }
+}
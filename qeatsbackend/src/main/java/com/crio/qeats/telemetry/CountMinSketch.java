@@ -0,0 +1,89 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-min sketch: approximate per-key counts in fixed memory.
+ *
+ * <p>Estimates never undercount. They overcount by at most {@code e / width} of the total count
+ * with probability {@code 1 - e^-depth}. Safe for concurrent use without locking.
+ */
+public class CountMinSketch {
+
+  private static final HashFunction HASH = Hashing.murmur3_128();
+
+  private final int width;
+  private final AtomicLongArray[] rows;
+
+  public CountMinSketch(int width, int depth) {
+    this.width = width;
+    this.rows = new AtomicLongArray[depth];
+    for (int i = 0; i < depth; i++) {
+      rows[i] = new AtomicLongArray(width);
+    }
+  }
+
+  /**
+   * Counts one occurrence of the key.
+   *
+   * @return the key's estimated count, this occurrence included
+   */
+  public long add(String key) {
+    byte[] hash = HASH.hashString(key, StandardCharsets.UTF_8).asBytes();
+    long h1 = toLong(hash, 0);
+    long h2 = toLong(hash, 8);
+    long estimate = Long.MAX_VALUE;
+    for (int i = 0; i < rows.length; i++) {
+      estimate = Math.min(estimate, rows[i].incrementAndGet(index(h1, h2, i)));
+    }
+    return estimate;
+  }
+
+  public long estimate(String key) {
+    byte[] hash = HASH.hashString(key, StandardCharsets.UTF_8).asBytes();
+    long h1 = toLong(hash, 0);
+    long h2 = toLong(hash, 8);
+    long estimate = Long.MAX_VALUE;
+    for (int i = 0; i < rows.length; i++) {
+      estimate = Math.min(estimate, rows[i].get(index(h1, h2, i)));
+    }
+    return estimate;
+  }
+
+  /**
+   * Halves every counter, so that counts follow recent traffic.
+   */
+  public void decay() {
+    for (AtomicLongArray row : rows) {
+      for (int i = 0; i < width; i++) {
+        long value;
+        do {
+          value = row.get(i);
+        } while (!row.compareAndSet(i, value, value >>> 1));
+      }
+    }
+  }
+
+  // Derives the row hashes from two halves of one 128 bit hash (Kirsch-Mitzenmacher).
+  private int index(long h1, long h2, int row) {
+    long combined = h1 + row * h2;
+    return (int) ((combined & Long.MAX_VALUE) % width);
+  }
+
+  private static long toLong(byte[] bytes, int offset) {
+    long value = 0;
+    for (int i = offset + 7; i >= offset; i--) {
+      value = (value << 8) | (bytes[i] & 0xff);
+    }
+    return value;
+  }
+}
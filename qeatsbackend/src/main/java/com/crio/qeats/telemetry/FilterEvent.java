@@ -0,0 +1,41 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The check of candidate restaurants for distance and opening hours.
+ */
+@Name("com.crio.qeats.Filter")
+@Label("QEats Filter")
+public class FilterEvent extends StageEvent {
+
+  @Label("Geohash")
+  String geohash;
+
+  @Label("Candidate Count")
+  int candidateCount;
+
+  @Label("Result Count")
+  int resultCount;
+
+  /**
+   * Commits the event if a recording wants it.
+   */
+  public void finish(Double latitude, Double longitude, int candidateCount, int resultCount) {
+    end();
+    if (shouldCommit()) {
+      stage = "filter";
+      geohash = geohash(latitude, longitude);
+      this.candidateCount = candidateCount;
+      this.resultCount = resultCount;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Approximate top-K most frequent keys, counted with a {@link CountMinSketch}.
+ *
+ * <p>Only the K current leaders are kept by name. A key enters once its estimated count beats
+ * the smallest leader, which then leaves. Recording a leader or a key that cannot make it into
+ * the top-K takes no lock; only admissions do, and only they scan the leaders.
+ */
+public class HeavyHitters {
+
+  private final CountMinSketch sketch;
+  private final int k;
+
+  private final Map<String, Long> leaders = new ConcurrentHashMap<>();
+  // Guards admissions and decay, which change the set of leaders.
+  private final Object admissionLock = new Object();
+  // Smallest leader count once the top-K is full, for the lock-free fast path. Leaders count up
+  // without the lock, so this may lag behind the actual smallest count.
+  private volatile long admissionThreshold;
+
+  public HeavyHitters(int k, int sketchWidth, int sketchDepth) {
+    this.k = k;
+    this.sketch = new CountMinSketch(sketchWidth, sketchDepth);
+  }
+
+  public void record(String key) {
+    long estimate = sketch.add(key);
+    if (leaders.replace(key, estimate) != null || estimate <= admissionThreshold) {
+      return;
+    }
+    synchronized (admissionLock) {
+      if (leaders.replace(key, estimate) != null) {
+        return;
+      }
+      if (leaders.size() < k) {
+        leaders.put(key, estimate);
+        admissionThreshold = leaders.size() < k ? 0 : leaders.get(smallestLeader());
+        return;
+      }
+      String smallest = smallestLeader();
+      long smallestCount = leaders.get(smallest);
+      if (estimate > smallestCount) {
+        leaders.remove(smallest);
+        leaders.put(key, estimate);
+        smallestCount = leaders.get(smallestLeader());
+      }
+      admissionThreshold = smallestCount;
+    }
+  }
+
+  /**
+   * Current leaders, most frequent first.
+   *
+   * @return key to estimated count
+   */
+  public Map<String, Long> top() {
+    List<Map.Entry<String, Long>> entries = new ArrayList<>(leaders.entrySet());
+    entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+    Map<String, Long> top = new LinkedHashMap<>();
+    for (Map.Entry<String, Long> entry : entries) {
+      top.put(entry.getKey(), entry.getValue());
+    }
+    return top;
+  }
+
+  /**
+   * Halves all counts, so that keys that cooled down make room for new ones.
+   */
+  public void decay() {
+    sketch.decay();
+    synchronized (admissionLock) {
+      leaders.replaceAll((key, count) -> count >>> 1);
+      admissionThreshold = leaders.size() < k ? 0 : leaders.get(smallestLeader());
+    }
+  }
+
+  private String smallestLeader() {
+    String smallest = null;
+    long smallestCount = Long.MAX_VALUE;
+    for (Map.Entry<String, Long> entry : leaders.entrySet()) {
+      if (entry.getValue() < smallestCount) {
+        smallest = entry.getKey();
+        smallestCount = entry.getValue();
+      }
+    }
+    return smallest;
+  }
+}
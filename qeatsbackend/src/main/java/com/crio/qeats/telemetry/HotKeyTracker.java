@@ -0,0 +1,178 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import ch.hsr.geohash.GeoHash;
+import com.crio.qeats.cache.RedisCacheAccess;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.ZParams;
+
+/**
+ * Tracks the hottest geohash cells and searches of the restaurants API.
+ *
+ * <p>Counts are approximate (see {@link HeavyHitters}) and decay every persist interval, so
+ * they follow recent traffic. On the same interval, each instance adds what its top keys gained
+ * since to fleet-wide counts in Redis, where a starting instance finds them to prewarm its
+ * caches. The fleet-wide counts decay like the local ones, once per interval whichever
+ * instance gets there first, so that keys that cooled down everywhere go away.
+ */
+@Component
+@Log4j2
+public class HotKeyTracker {
+
+  public static final String CELLS = "cells";
+  public static final String SEARCHES = "searches";
+
+  static final String REDIS_KEY_PREFIX = "qeats:hotkeys:";
+
+  // Set by the instance decaying the fleet-wide counts, until the next interval.
+  static final String DECAY_MARKER_PREFIX = "qeats:hotkeys:decayed:";
+
+  // As the halving of the local counts.
+  private static final double DECAY_WEIGHT = 0.5;
+
+  // Separates the cell from the query in search keys.
+  public static final String SEARCH_SEPARATOR = "|";
+
+  private static final int GEOHASH_PRECISION = 7;
+
+  @Autowired
+  private RedisCacheAccess redisCacheAccess;
+
+  @Value("${qeats.hotkeys.top-k:100}")
+  private int topK;
+
+  @Value("${qeats.hotkeys.sketch-width:2048}")
+  private int sketchWidth;
+
+  @Value("${qeats.hotkeys.sketch-depth:4}")
+  private int sketchDepth;
+
+  @Value("${qeats.hotkeys.persist-interval-seconds:60}")
+  private long persistIntervalSeconds;
+
+  private final Map<String, HeavyHitters> hitters = new HashMap<>();
+  // Per kind, the top counts right after the last persist: what is above them is new since.
+  private final Map<String, Map<String, Long>> persistedCounts = new HashMap<>();
+  private ScheduledExecutorService persister;
+
+  @PostConstruct
+  public void init() {
+    hitters.put(CELLS, new HeavyHitters(topK, sketchWidth, sketchDepth));
+    hitters.put(SEARCHES, new HeavyHitters(topK, sketchWidth, sketchDepth));
+    persister = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("hotkeys-persister").setDaemon(true).build());
+    persister.scheduleWithFixedDelay(this::persist, persistIntervalSeconds,
+        persistIntervalSeconds, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    persister.shutdownNow();
+  }
+
+  public void recordNearby(double latitude, double longitude) {
+    hitters.get(CELLS).record(cellOf(latitude, longitude));
+  }
+
+  public void recordSearch(double latitude, double longitude, String searchFor) {
+    hitters.get(SEARCHES).record(cellOf(latitude, longitude) + SEARCH_SEPARATOR + searchFor);
+  }
+
+  /**
+   * Hottest keys seen by this instance.
+   *
+   * @return {@link #CELLS} and {@link #SEARCHES} to their keys and estimated counts, hottest
+   *     first
+   */
+  public Map<String, Map<String, Long>> top() {
+    Map<String, Map<String, Long>> top = new LinkedHashMap<>();
+    top.put(CELLS, hitters.get(CELLS).top());
+    top.put(SEARCHES, hitters.get(SEARCHES).top());
+    return top;
+  }
+
+  /**
+   * Hottest keys of the fleet, as persisted by all instances.
+   *
+   * @param kind {@link #CELLS} or {@link #SEARCHES}
+   * @param limit most keys to return
+   * @return keys to counts, hottest first; empty if Redis is unavailable
+   */
+  public Map<String, Long> loadPersisted(String kind, int limit) {
+    Set<Tuple> tuples = redisCacheAccess.execute(
+        jedis -> jedis.zrevrangeWithScores(REDIS_KEY_PREFIX + kind, 0, limit - 1),
+        Collections::emptySet);
+    Map<String, Long> persisted = new LinkedHashMap<>();
+    for (Tuple tuple : tuples) {
+      persisted.put(tuple.getElement(), (long) tuple.getScore());
+    }
+    return persisted;
+  }
+
+  void persist() {
+    Map<String, Map<String, Double>> increments = new HashMap<>();
+    for (Map.Entry<String, HeavyHitters> entry : hitters.entrySet()) {
+      Map<String, Long> previous = persistedCounts.getOrDefault(entry.getKey(),
+          Collections.emptyMap());
+      Map<String, Double> gained = new HashMap<>();
+      entry.getValue().top().forEach((key, count) -> {
+        long increment = count - previous.getOrDefault(key, 0L);
+        if (increment > 0) {
+          gained.put(key, (double) increment);
+        }
+      });
+      increments.put(entry.getKey(), gained);
+    }
+
+    redisCacheAccess.run(jedis -> {
+      for (Map.Entry<String, Map<String, Double>> entry : increments.entrySet()) {
+        String redisKey = REDIS_KEY_PREFIX + entry.getKey();
+        boolean decay = jedis.set(DECAY_MARKER_PREFIX + entry.getKey(), "1", "NX", "EX",
+            persistIntervalSeconds) != null;
+        if (!decay && entry.getValue().isEmpty()) {
+          continue;
+        }
+        Transaction transaction = jedis.multi();
+        if (decay) {
+          transaction.zunionstore(redisKey, new ZParams().weightsByDouble(DECAY_WEIGHT), redisKey);
+          transaction.zremrangeByScore(redisKey, "-inf", "(1");
+        }
+        entry.getValue().forEach((key, increment) ->
+            transaction.zincrby(redisKey, increment, key));
+        // Only the fleet's top-K are kept.
+        transaction.zremrangeByRank(redisKey, 0, -topK - 1);
+        transaction.expire(redisKey, (int) TimeUnit.DAYS.toSeconds(1));
+        transaction.exec();
+      }
+    });
+    for (Map.Entry<String, HeavyHitters> entry : hitters.entrySet()) {
+      entry.getValue().decay();
+      persistedCounts.put(entry.getKey(), entry.getValue().top());
+    }
+  }
+
+  private static String cellOf(double latitude, double longitude) {
+    return GeoHash.withCharacterPrecision(latitude, longitude, GEOHASH_PRECISION).toBase32();
+  }
+}
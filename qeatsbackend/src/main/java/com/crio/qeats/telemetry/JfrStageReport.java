@@ -0,0 +1,140 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Per-stage latency report of a flight recording, run with
+ * {@code ./gradlew jfrReport -Pjfr.file=<recording.jfr>}.
+ *
+ * <p>Groups the QEats events of the recording by event and stage and prints the distribution
+ * of their durations, largest total first, so that the stages can be lined up with the GC,
+ * lock and I/O events of the same recording. Record with, for instance,
+ * {@code -XX:StartFlightRecording=duration=5m,settings=profile,filename=qeats.jfr}.
+ */
+public final class JfrStageReport {
+
+  static final String EVENT_PREFIX = "com.crio.qeats.";
+
+  private static final String ROW_FORMAT = "%-16s %-32s %8s %10s %9s %9s %9s %9s %9s%n";
+
+  private JfrStageReport() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: JfrStageReport <recording.jfr>");
+      System.exit(2);
+    }
+    System.out.print(format(summarize(Paths.get(args[0]))));
+  }
+
+  /**
+   * Reads the QEats events of a recording.
+   *
+   * @return statistics per event and stage, largest total duration first
+   */
+  static List<StageStats> summarize(Path recording) throws IOException {
+    Map<String, StageStats> stages = new LinkedHashMap<>();
+    try (RecordingFile file = new RecordingFile(recording)) {
+      while (file.hasMoreEvents()) {
+        RecordedEvent event = file.readEvent();
+        String name = event.getEventType().getName();
+        if (!name.startsWith(EVENT_PREFIX)) {
+          continue;
+        }
+        String eventName = name.substring(EVENT_PREFIX.length());
+        String stage = event.getString("stage");
+        stages.computeIfAbsent(eventName + '/' + stage, key -> new StageStats(eventName, stage))
+            .add(event.getDuration().toNanos());
+      }
+    }
+    List<StageStats> sorted = new ArrayList<>(stages.values());
+    sorted.sort(Comparator.comparingLong(StageStats::getTotalNanos).reversed());
+    return sorted;
+  }
+
+  static String format(List<StageStats> stages) {
+    StringBuilder report = new StringBuilder(String.format(ROW_FORMAT, "event", "stage",
+        "count", "total ms", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+    for (StageStats stats : stages) {
+      report.append(String.format(ROW_FORMAT, stats.getEvent(), stats.getStage(),
+          stats.getCount(), millis(stats.getTotalNanos()),
+          millis(stats.getTotalNanos() / stats.getCount()), millis(stats.percentile(50)),
+          millis(stats.percentile(90)), millis(stats.percentile(99)),
+          millis(stats.percentile(100))));
+    }
+    return report.toString();
+  }
+
+  private static String millis(long nanos) {
+    return String.format("%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  /**
+   * Durations of the events of one stage.
+   */
+  static final class StageStats {
+
+    private final String event;
+    private final String stage;
+    private final List<Long> durations = new ArrayList<>();
+    private long totalNanos;
+    private boolean sorted = true;
+
+    StageStats(String event, String stage) {
+      this.event = event;
+      this.stage = stage;
+    }
+
+    void add(long nanos) {
+      durations.add(nanos);
+      totalNanos += nanos;
+      sorted = false;
+    }
+
+    String getEvent() {
+      return event;
+    }
+
+    String getStage() {
+      return stage;
+    }
+
+    int getCount() {
+      return durations.size();
+    }
+
+    long getTotalNanos() {
+      return totalNanos;
+    }
+
+    /**
+     * Nearest-rank percentile of the durations.
+     */
+    long percentile(double percent) {
+      if (!sorted) {
+        Collections.sort(durations);
+        sorted = true;
+      }
+      int rank = (int) Math.ceil(percent / 100 * durations.size());
+      return durations.get(Math.max(rank, 1) - 1);
+    }
+  }
+}
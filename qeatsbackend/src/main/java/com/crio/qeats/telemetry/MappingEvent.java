@@ -0,0 +1,33 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The conversion of restaurant entities to DTOs.
+ */
+@Name("com.crio.qeats.Mapping")
+@Label("QEats Mapping")
+public class MappingEvent extends StageEvent {
+
+  @Label("Restaurant Count")
+  int restaurantCount;
+
+  /**
+   * Commits the event if a recording wants it.
+   */
+  public void finish(int restaurantCount) {
+    end();
+    if (shouldCommit()) {
+      stage = "mapping";
+      this.restaurantCount = restaurantCount;
+      commit();
+    }
+  }
+}
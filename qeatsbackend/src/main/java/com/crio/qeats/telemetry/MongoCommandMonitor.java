@@ -0,0 +1,369 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoException;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.bson.BsonArray;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonDocument;
+import org.bson.BsonReader;
+import org.bson.BsonString;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Listens to the commands the Mongo driver sends, to time them and to explain the slow ones.
+ *
+ * <p>Every command is recorded as qeats.mongo.command{command, collection}, along with the
+ * documents and bytes of its reply. A query slower than the threshold is logged, and its plan
+ * is then explained in the background, once per query shape and interval, so that collection
+ * scans show up in the log and at /actuator/mongocommands.
+ */
+@Component
+@Log4j2
+public class MongoCommandMonitor implements CommandListener {
+
+  // Commands that can be explained, and the field of each that shapes the query.
+  private static final Map<String, String> SHAPING_FIELDS = new HashMap<>();
+
+  static {
+    SHAPING_FIELDS.put("find", "filter");
+    SHAPING_FIELDS.put("aggregate", "pipeline");
+    SHAPING_FIELDS.put("count", "query");
+    SHAPING_FIELDS.put("distinct", "query");
+  }
+
+  // Shapes remembered, for the explain interval and for the plans listed.
+  private static final int MAX_SHAPES = 256;
+
+  @Autowired
+  private ObjectProvider<MongoClient> mongoClient;
+
+  @Value("${qeats.mongo.slow-command-ms:100}")
+  private long slowCommandMillis;
+
+  @Value("${qeats.mongo.explain.enabled:true}")
+  private boolean explainEnabled;
+
+  // The same query shape is explained at most once per interval.
+  @Value("${qeats.mongo.explain.interval-seconds:300}")
+  private long explainIntervalSeconds;
+
+  // Slow commands listed, the latest first.
+  @Value("${qeats.mongo.slow-commands.size:50}")
+  private int slowCommandsSize;
+
+  private final Map<Integer, StartedCommand> started = new ConcurrentHashMap<>();
+  private final Map<String, CommandMeters> meters = new ConcurrentHashMap<>();
+  private final Map<String, Long> explainedAt = new ConcurrentHashMap<>();
+  private final Deque<SlowMongoCommand> slowCommands = new ArrayDeque<>();
+  private final Map<String, MongoPlanSummary> plans =
+      new LinkedHashMap<String, MongoPlanSummary>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MongoPlanSummary> eldest) {
+          return size() > MAX_SHAPES;
+        }
+      };
+
+  private ExecutorService explainer;
+
+  @PostConstruct
+  public void init() {
+    // Explains queue up behind each other; when too many do, new ones are dropped.
+    explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(16),
+        new ThreadFactoryBuilder().setNameFormat("mongo-explain").setDaemon(true).build(),
+        new ThreadPoolExecutor.DiscardPolicy());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    explainer.shutdownNow();
+  }
+
+  @Override
+  public void commandStarted(CommandStartedEvent event) {
+    String command = event.getCommandName();
+    BsonDocument body = event.getCommand();
+    String collection = body.isString(command) ? body.getString(command).getValue()
+        : body.isString("collection") ? body.getString("collection").getValue() : "";
+    // The command is only readable during this call; keep a copy of the ones to explain.
+    BsonDocument query = SHAPING_FIELDS.containsKey(command) ? body.clone() : null;
+    started.put(event.getRequestId(),
+        new StartedCommand(event.getDatabaseName(), collection, query));
+  }
+
+  @Override
+  public void commandSucceeded(CommandSucceededEvent event) {
+    StartedCommand command = started.remove(event.getRequestId());
+    if (command == null) {
+      return;
+    }
+    long nanos = event.getElapsedTime(TimeUnit.NANOSECONDS);
+    BsonDocument reply = event.getResponse();
+    int returned = countReturned(reply);
+    int bytes = sizeInBytes(reply);
+    meters(event.getCommandName(), command.collection).record(nanos, returned, bytes);
+    if (nanos >= TimeUnit.MILLISECONDS.toNanos(slowCommandMillis)) {
+      onSlowCommand(event.getCommandName(), command, nanos, returned, bytes);
+    }
+  }
+
+  @Override
+  public void commandFailed(CommandFailedEvent event) {
+    StartedCommand command = started.remove(event.getRequestId());
+    if (command != null) {
+      meters(event.getCommandName(), command.collection).failures.increment();
+    }
+  }
+
+  public long getSlowCommandMillis() {
+    return slowCommandMillis;
+  }
+
+  public List<SlowMongoCommand> slowCommands() {
+    synchronized (slowCommands) {
+      return new ArrayList<>(slowCommands);
+    }
+  }
+
+  /**
+   * Plans of the slow query shapes explained, by shape.
+   */
+  public Map<String, MongoPlanSummary> plans() {
+    synchronized (plans) {
+      return new LinkedHashMap<>(plans);
+    }
+  }
+
+  private void onSlowCommand(String commandName, StartedCommand command, long nanos,
+      int returned, int bytes) {
+    String shapingField = SHAPING_FIELDS.get(commandName);
+    String shape = command.query == null ? "" : new BsonDocument(shapingField,
+        shapeOf(command.query.get(shapingField))).toJson();
+    SlowMongoCommand slow = new SlowMongoCommand(Instant.now().toString(), commandName,
+        command.collection, shape, nanos / 1e6, returned, bytes);
+    log.warn("Slow Mongo {} on {} took {} ms for {} documents ({} bytes): {}", commandName,
+        command.collection, String.format("%.1f", slow.getDurationMillis()), returned, bytes,
+        shape);
+    synchronized (slowCommands) {
+      slowCommands.addFirst(slow);
+      while (slowCommands.size() > slowCommandsSize) {
+        slowCommands.removeLast();
+      }
+    }
+    if (explainEnabled && command.query != null) {
+      explainLater(commandName + ' ' + command.collection + ' ' + shape, command);
+    }
+  }
+
+  private void explainLater(String shapeKey, StartedCommand command) {
+    long now = System.currentTimeMillis();
+    Long last = explainedAt.get(shapeKey);
+    if (last != null && now - last < TimeUnit.SECONDS.toMillis(explainIntervalSeconds)) {
+      return;
+    }
+    if (explainedAt.size() >= MAX_SHAPES) {
+      explainedAt.clear();
+    }
+    explainedAt.put(shapeKey, now);
+    explainer.execute(() -> explain(shapeKey, command));
+  }
+
+  private void explain(String shapeKey, StartedCommand command) {
+    MongoClient client = mongoClient.getIfAvailable();
+    if (client == null) {
+      return;
+    }
+    try {
+      BsonDocument explain = client.getDatabase(command.database).runCommand(
+          new BsonDocument("explain", explainable(command.query))
+              .append("verbosity", new BsonString("executionStats")),
+          BsonDocument.class);
+      MongoPlanSummary plan = MongoPlanSummary.of(explain);
+      if (plan == null) {
+        return;
+      }
+      synchronized (plans) {
+        plans.put(shapeKey, plan);
+      }
+      if (plan.isCollectionScan()) {
+        log.warn("Mongo {} scans the whole collection: {}", shapeKey, plan);
+      } else {
+        log.info("Mongo {} plan: {}", shapeKey, plan);
+      }
+    } catch (MongoException e) {
+      log.debug("Could not explain Mongo {}", shapeKey, e);
+    }
+  }
+
+  private CommandMeters meters(String commandName, String collection) {
+    return meters.computeIfAbsent(commandName + '|' + collection,
+        key -> new CommandMeters(commandName, collection));
+  }
+
+  /**
+   * The command without the fields the driver adds to every command (session, cluster time,
+   * database) and without its time limit, which is the request's and not the explain's.
+   */
+  static BsonDocument explainable(BsonDocument command) {
+    BsonDocument explainable = new BsonDocument();
+    for (Map.Entry<String, BsonValue> field : command.entrySet()) {
+      String name = field.getKey();
+      if (!name.startsWith("$") && !name.equals("lsid") && !name.equals("txnNumber")
+          && !name.equals("maxTimeMS")) {
+        explainable.put(name, field.getValue());
+      }
+    }
+    return explainable;
+  }
+
+  /**
+   * A filter or pipeline with its values replaced by ?, so that queries differing only by
+   * their values have the same shape. Regular expressions stay recognizable, as {$regex: ?}.
+   */
+  static BsonValue shapeOf(BsonValue value) {
+    if (value == null) {
+      return new BsonDocument();
+    }
+    if (value.isDocument()) {
+      BsonDocument shape = new BsonDocument();
+      for (Map.Entry<String, BsonValue> field : value.asDocument().entrySet()) {
+        shape.put(field.getKey(), shapeOf(field.getValue()));
+      }
+      return shape;
+    }
+    // Arrays of documents ($and, $or, pipelines) keep their structure, arrays of values don't.
+    if (value.isArray() && !value.asArray().isEmpty()
+        && value.asArray().get(0).isDocument()) {
+      BsonArray shape = new BsonArray();
+      for (BsonValue element : value.asArray()) {
+        shape.add(shapeOf(element));
+      }
+      return shape;
+    }
+    if (value.isRegularExpression()) {
+      return new BsonDocument("$regex", new BsonString("?"));
+    }
+    return new BsonString("?");
+  }
+
+  /**
+   * Documents in the batch of a cursor reply, counted by skipping over them: they are not
+   * decoded a second time.
+   */
+  static int countReturned(BsonDocument reply) {
+    try (BsonReader reader = reply.asBsonReader()) {
+      reader.readStartDocument();
+      while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+        if (!reader.readName().equals("cursor")
+            || reader.getCurrentBsonType() != BsonType.DOCUMENT) {
+          reader.skipValue();
+          continue;
+        }
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+          String name = reader.readName();
+          if ((name.equals("firstBatch") || name.equals("nextBatch"))
+              && reader.getCurrentBsonType() == BsonType.ARRAY) {
+            int count = 0;
+            reader.readStartArray();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+              reader.skipValue();
+              count++;
+            }
+            return count;
+          }
+          reader.skipValue();
+        }
+        return 0;
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * Size of a reply as received, or 0 if the driver has already decoded it.
+   */
+  static int sizeInBytes(BsonDocument reply) {
+    try (BsonReader reader = reply.asBsonReader()) {
+      // Binary documents start with their length.
+      return reader instanceof BsonBinaryReader
+          ? ((BsonBinaryReader) reader).getBsonInput().readInt32() : 0;
+    }
+  }
+
+  private static class StartedCommand {
+    private final String database;
+    private final String collection;
+    private final BsonDocument query;
+
+    StartedCommand(String database, String collection, BsonDocument query) {
+      this.database = database;
+      this.collection = collection;
+      this.query = query;
+    }
+  }
+
+  private static class CommandMeters {
+    private final Timer latency;
+    private final DistributionSummary returned;
+    private final DistributionSummary bytes;
+    private final Counter failures;
+
+    CommandMeters(String commandName, String collection) {
+      latency = Timer.builder("qeats.mongo.command")
+          .tag("command", commandName).tag("collection", collection)
+          .register(Metrics.globalRegistry);
+      returned = DistributionSummary.builder("qeats.mongo.command.returned")
+          .tag("command", commandName).tag("collection", collection)
+          .register(Metrics.globalRegistry);
+      bytes = DistributionSummary.builder("qeats.mongo.command.bytes").baseUnit("bytes")
+          .tag("command", commandName).tag("collection", collection)
+          .register(Metrics.globalRegistry);
+      failures = Counter.builder("qeats.mongo.command.failures")
+          .tag("command", commandName).tag("collection", collection)
+          .register(Metrics.globalRegistry);
+    }
+
+    void record(long nanos, int returnedCount, int byteCount) {
+      latency.record(nanos, TimeUnit.NANOSECONDS);
+      returned.record(returnedCount);
+      bytes.record(byteCount);
+    }
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint listing the latest slow Mongo commands and the plans of their query shapes,
+ * at /actuator/mongocommands.
+ */
+@Component
+@Endpoint(id = "mongocommands")
+public class MongoCommandsEndpoint {
+
+  @Autowired
+  private MongoCommandMonitor mongoCommandMonitor;
+
+  @ReadOperation
+  public Map<String, Object> mongoCommands() {
+    Map<String, Object> commands = new LinkedHashMap<>();
+    commands.put("slowCommandMillis", mongoCommandMonitor.getSlowCommandMillis());
+    commands.put("slowCommands", mongoCommandMonitor.slowCommands());
+    commands.put("plans", mongoCommandMonitor.plans());
+    return commands;
+  }
+}
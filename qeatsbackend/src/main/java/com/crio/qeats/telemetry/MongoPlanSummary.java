@@ -0,0 +1,111 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+/**
+ * What the query planner chose for a command, and what it cost, from its executionStats
+ * explain.
+ */
+@Getter
+@AllArgsConstructor
+public class MongoPlanSummary {
+
+  // Stages of the winning plan, from the root down, as in [FETCH, IXSCAN].
+  private final List<String> stages;
+
+  // Indexes the winning plan scans.
+  private final List<String> indexes;
+
+  private final boolean collectionScan;
+  private final long docsExamined;
+  private final long keysExamined;
+  private final long returned;
+  private final long executionMillis;
+
+  /**
+   * Summarizes an explain, of a find or an aggregate alike.
+   *
+   * @return the summary, or null if the explain has no query plan
+   */
+  public static MongoPlanSummary of(BsonDocument explain) {
+    BsonDocument queryPlanner = find(explain, "queryPlanner");
+    if (queryPlanner == null || !queryPlanner.isDocument("winningPlan")) {
+      return null;
+    }
+    List<String> stages = new ArrayList<>();
+    List<String> indexes = new ArrayList<>();
+    collectStages(queryPlanner.getDocument("winningPlan"), stages, indexes);
+
+    BsonDocument executionStats = find(explain, "executionStats");
+    return new MongoPlanSummary(stages, indexes, stages.contains("COLLSCAN"),
+        number(executionStats, "totalDocsExamined"), number(executionStats, "totalKeysExamined"),
+        number(executionStats, "nReturned"), number(executionStats, "executionTimeMillis"));
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s%s, %d docs and %d keys examined for %d returned in %d ms",
+        String.join(" > ", stages), indexes.isEmpty() ? "" : " " + indexes, docsExamined,
+        keysExamined, returned, executionMillis);
+  }
+
+  // Plans are trees: inputStage for most stages, inputStages for OR and the like.
+  private static void collectStages(BsonDocument stage, List<String> stages,
+      List<String> indexes) {
+    if (stage.isString("stage")) {
+      stages.add(stage.getString("stage").getValue());
+    }
+    if (stage.isString("indexName")) {
+      indexes.add(stage.getString("indexName").getValue());
+    }
+    if (stage.isDocument("inputStage")) {
+      collectStages(stage.getDocument("inputStage"), stages, indexes);
+    }
+    if (stage.isArray("inputStages")) {
+      for (BsonValue input : stage.getArray("inputStages")) {
+        if (input.isDocument()) {
+          collectStages(input.asDocument(), stages, indexes);
+        }
+      }
+    }
+  }
+
+  // Aggregates nest the plan of their first stage ($cursor), so look for it depth first.
+  private static BsonDocument find(BsonDocument document, String key) {
+    if (document.isDocument(key)) {
+      return document.getDocument(key);
+    }
+    for (BsonValue value : document.values()) {
+      BsonDocument found = null;
+      if (value.isDocument()) {
+        found = find(value.asDocument(), key);
+      } else if (value.isArray()) {
+        for (BsonValue element : value.asArray()) {
+          if (element.isDocument() && (found = find(element.asDocument(), key)) != null) {
+            break;
+          }
+        }
+      }
+      if (found != null) {
+        return found;
+      }
+    }
+    return null;
+  }
+
+  private static long number(BsonDocument document, String key) {
+    return document != null && document.isNumber(key)
+        ? document.getNumber(key).longValue() : -1;
+  }
+}
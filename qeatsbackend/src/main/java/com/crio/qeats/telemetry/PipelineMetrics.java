@@ -0,0 +1,195 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import com.crio.qeats.utils.RequestContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Meters of the stages of the nearby and search pipelines, in the global registry that actuator
+ * exports (/actuator/metrics/qeats.stage and so on).
+ *
+ * <p>Each meter has one tag naming what was timed or counted. Timings also add to the current
+ * request's {@link RequestSummary}, by stage.
+ */
+public final class PipelineMetrics {
+
+  // Stages of the pipelines, tagged stage: candidates, filter, mapping, ...
+  public static final String STAGE = "qeats.stage";
+
+  // Mongo repository calls, tagged query.
+  public static final String MONGO = "qeats.mongo";
+
+  // Redis round trips, tagged command.
+  public static final String REDIS = "qeats.redis.command";
+
+  // Cache lookups, tagged type (near, cell, restaurant) and result (hit, miss).
+  public static final String CACHE_LOOKUPS = "qeats.cache.lookups";
+
+  // Sources of a search, tagged source.
+  public static final String SEARCH_SOURCE = "qeats.search.source";
+
+  // Time tasks wait in an executor's queue before they run, tagged name.
+  public static final String EXECUTOR_QUEUE_WAIT = "qeats.executor.queue.wait";
+
+  // Heap allocated per request, in bytes, tagged endpoint (nearby, search, stream).
+  public static final String REQUEST_ALLOCATED = "qeats.request.allocated";
+
+  private static final ConcurrentMap<String, Timer> TIMERS = new ConcurrentHashMap<>();
+  private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+  private static final ConcurrentMap<String, DistributionSummary> ALLOCATIONS =
+      new ConcurrentHashMap<>();
+
+  private PipelineMetrics() {
+  }
+
+  public static void recordStage(String stage, long nanos) {
+    record(STAGE, "stage", stage, stage, nanos);
+  }
+
+  public static <T> T timeStage(String stage, Supplier<T> work) {
+    return time(STAGE, "stage", stage, stage, work);
+  }
+
+  public static <T> T timeMongo(String query, Supplier<T> call) {
+    return time(MONGO, "query", query, "mongo", call);
+  }
+
+  public static <T> T timeRedis(String command, Supplier<T> call) {
+    return time(REDIS, "command", command, "redis", call);
+  }
+
+  public static void timeRedis(String command, Runnable call) {
+    timeRedis(command, () -> {
+      call.run();
+      return null;
+    });
+  }
+
+  public static <T> T timeSearchSource(String source, Supplier<T> search) {
+    return time(SEARCH_SOURCE, "source", source, source + "Source", search);
+  }
+
+  /**
+   * Counts the hits and misses of a lookup of one or more keys of a type.
+   */
+  public static void recordCacheLookups(String type, int hits, int misses) {
+    if (hits > 0) {
+      counter(type, "hit").increment(hits);
+    }
+    if (misses > 0) {
+      counter(type, "miss").increment(misses);
+    }
+  }
+
+  /**
+   * Records the heap a request allocated, by the endpoint its summary was started for; call
+   * once the request's context has ended.
+   */
+  public static void recordAllocation(RequestSummary summary) {
+    if (summary == RequestSummary.NONE || !ThreadAllocation.isSupported()) {
+      return;
+    }
+    ALLOCATIONS.computeIfAbsent(summary.getOperation(),
+        endpoint -> DistributionSummary.builder(REQUEST_ALLOCATED).baseUnit("bytes")
+            .tag("endpoint", endpoint).register(Metrics.globalRegistry))
+        .record(summary.getAllocatedBytes());
+  }
+
+  /**
+   * Wraps an executor to time how long its tasks wait before they run.
+   *
+   * @param executor executor to wrap; shutting the wrapper down shuts it down
+   * @param name value of the name tag
+   */
+  public static ExecutorService timeQueueWait(ExecutorService executor, String name) {
+    return new QueueWaitTimedExecutorService(executor,
+        timer(EXECUTOR_QUEUE_WAIT, "name", name));
+  }
+
+  private static <T> T time(String metric, String tag, String value, String summaryStage,
+      Supplier<T> work) {
+    long startNanos = System.nanoTime();
+    try {
+      return work.get();
+    } finally {
+      record(metric, tag, value, summaryStage, System.nanoTime() - startNanos);
+    }
+  }
+
+  private static void record(String metric, String tag, String value, String summaryStage,
+      long nanos) {
+    timer(metric, tag, value).record(nanos, TimeUnit.NANOSECONDS);
+    RequestContext.summary().addStageNanos(summaryStage, nanos);
+  }
+
+  private static Timer timer(String metric, String tag, String value) {
+    return TIMERS.computeIfAbsent(metric + '|' + value,
+        key -> Timer.builder(metric).tag(tag, value).register(Metrics.globalRegistry));
+  }
+
+  private static Counter counter(String type, String result) {
+    return COUNTERS.computeIfAbsent(type + '|' + result,
+        key -> Counter.builder(CACHE_LOOKUPS).tag("type", type).tag("result", result)
+            .register(Metrics.globalRegistry));
+  }
+
+  private static final class QueueWaitTimedExecutorService extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+    private final Timer queueWait;
+
+    QueueWaitTimedExecutorService(ExecutorService delegate, Timer queueWait) {
+      this.delegate = delegate;
+      this.queueWait = queueWait;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      long submittedNanos = System.nanoTime();
+      delegate.execute(() -> {
+        queueWait.record(System.nanoTime() - submittedNanos, TimeUnit.NANOSECONDS);
+        command.run();
+      });
+    }
+
+    @Override
+    public void shutdown() {
+      delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+      return delegate.awaitTermination(timeout, unit);
+    }
+  }
+}
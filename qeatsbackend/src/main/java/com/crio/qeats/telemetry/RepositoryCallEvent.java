@@ -0,0 +1,45 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A call to the restaurant repository service.
+ */
+@Name("com.crio.qeats.RepositoryCall")
+@Label("QEats Repository Call")
+public class RepositoryCallEvent extends StageEvent {
+
+  @Label("Geohash")
+  String geohash;
+
+  @Label("Query Length")
+  int queryLength;
+
+  @Label("Result Count")
+  int resultCount;
+
+  /**
+   * Commits the event if a recording wants it.
+   *
+   * @param method repository service method called
+   * @param searchFor search query, null for nearby calls
+   */
+  public void finish(String method, Double latitude, Double longitude, String searchFor,
+      int resultCount) {
+    end();
+    if (shouldCommit()) {
+      stage = method;
+      geohash = geohash(latitude, longitude);
+      queryLength = length(searchFor);
+      this.resultCount = resultCount;
+      commit();
+    }
+  }
+}
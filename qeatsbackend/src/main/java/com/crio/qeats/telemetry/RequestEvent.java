@@ -0,0 +1,50 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A restaurants API request, from the controller's point of view.
+ */
+@Name("com.crio.qeats.Request")
+@Label("QEats Request")
+public class RequestEvent extends StageEvent {
+
+  @Label("Geohash")
+  String geohash;
+
+  @Label("Query Length")
+  int queryLength;
+
+  @Label("Result Count")
+  int resultCount;
+
+  @Label("Cache Outcome")
+  @Description("Where the restaurants came from, as in near, redis or miss")
+  String cacheOutcome;
+
+  /**
+   * Commits the event if a recording wants it.
+   *
+   * @param summary summary of the request, for its operation, outcome and result count
+   */
+  public void finish(RequestSummary summary, Double latitude, Double longitude,
+      String searchFor) {
+    end();
+    if (shouldCommit()) {
+      stage = summary.getOperation();
+      geohash = geohash(latitude, longitude);
+      queryLength = length(searchFor);
+      resultCount = Math.max(summary.getReturned(), 0);
+      cacheOutcome = summary.getCacheOutcome();
+      commit();
+    }
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.log4j.Log4j2;
+import org.apache.logging.log4j.message.StringMapMessage;
+
+/**
+ * What one restaurants request did, logged as a single structured event when it ends.
+ *
+ * <p>Takes the place of log lines per step and per restaurant. Counters may be updated from the
+ * threads of the request's fan-out. A sample of the requests, or all of them with DEBUG on for
+ * this logger, are verbose: they also log per-restaurant diagnostics along the way.
+ */
+@Log4j2
+public class RequestSummary {
+
+  // Stands in outside requests: records nothing, logs nothing and is never verbose.
+  public static final RequestSummary NONE = new RequestSummary("none", false);
+
+  private final String operation;
+  private final boolean verbose;
+  private final long startNanos = System.nanoTime();
+  private final AtomicInteger scanned = new AtomicInteger();
+  private final Map<String, Long> stageNanos = new ConcurrentHashMap<>();
+  private final AtomicLong allocatedBytes = new AtomicLong();
+  private volatile int returned = -1;
+  private volatile String cacheOutcome = "none";
+
+  RequestSummary(String operation, boolean verbose) {
+    this.operation = operation;
+    this.verbose = verbose;
+  }
+
+  /**
+   * Starts the summary of a request.
+   *
+   * @param operation what the request does, as in nearby or search
+   * @param verboseSampleRate fraction of the requests to make verbose
+   */
+  public static RequestSummary start(String operation, double verboseSampleRate) {
+    boolean verbose = log.isDebugEnabled()
+        || (verboseSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < verboseSampleRate);
+    return new RequestSummary(operation, verbose);
+  }
+
+  public boolean isVerbose() {
+    return verbose;
+  }
+
+  /**
+   * Counts restaurants looked at, whether they made it to the response or not.
+   */
+  public void addScanned(int count) {
+    if (this != NONE) {
+      scanned.addAndGet(count);
+    }
+  }
+
+  public void setReturned(int count) {
+    if (this != NONE) {
+      returned = count;
+    }
+  }
+
+  /**
+   * Where the restaurants came from, as in near, redis or mongo.
+   */
+  public void setCacheOutcome(String outcome) {
+    if (this != NONE) {
+      cacheOutcome = outcome;
+    }
+  }
+
+  /**
+   * Adds time spent in a stage of the request; stages run more than once add up.
+   */
+  public void addStageNanos(String stage, long nanos) {
+    if (this != NONE) {
+      stageNanos.merge(stage, nanos, Long::sum);
+    }
+  }
+
+  /**
+   * Adds heap allocated for the request by one of its threads.
+   */
+  public void addAllocatedBytes(long bytes) {
+    if (this != NONE && bytes > 0) {
+      allocatedBytes.addAndGet(bytes);
+    }
+  }
+
+  /**
+   * Heap allocated so far by the request's thread and the tasks of its fan-out.
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes.get();
+  }
+
+  String getOperation() {
+    return operation;
+  }
+
+  int getReturned() {
+    return returned;
+  }
+
+  String getCacheOutcome() {
+    return cacheOutcome;
+  }
+
+  /**
+   * Logs the event; call once, when the request ends.
+   */
+  public void log() {
+    if (this == NONE || !log.isInfoEnabled()) {
+      return;
+    }
+    log.info(toMessage());
+  }
+
+  StringMapMessage toMessage() {
+    StringMapMessage message = new StringMapMessage()
+        .with("operation", operation)
+        .with("totalMs", millis(System.nanoTime() - startNanos))
+        .with("scanned", scanned.get())
+        .with("cache", cacheOutcome);
+    if (returned >= 0) {
+      message.with("returned", returned);
+    }
+    if (ThreadAllocation.isSupported()) {
+      message.with("allocatedKb", allocatedBytes.get() / 1024);
+    }
+    for (Map.Entry<String, Long> stage : stageNanos.entrySet()) {
+      message.with(stage.getKey() + "Ms", millis(stage.getValue()));
+    }
+    return message;
+  }
+
+  private static String millis(long nanos) {
+    return String.format("%.3f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+  }
+}
@@ -0,0 +1,30 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A Mongo command that took longer than the slow command threshold.
+ */
+@Getter
+@AllArgsConstructor
+public class SlowMongoCommand {
+
+  private final String time;
+  private final String command;
+  private final String collection;
+
+  // The command's filter or pipeline with its values left out, as in
+  // {"filter": {"name": {"$regex": "?"}}}.
+  private final String shape;
+
+  private final double durationMillis;
+  private final int returned;
+  private final int bytes;
+}
@@ -0,0 +1,46 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import ch.hsr.geohash.GeoHash;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of a stage of a restaurants request.
+ *
+ * <p>Events are created where a stage starts, which begins timing, and committed where it
+ * ends. When no recording asks for them, {@link #shouldCommit()} is false, attributes are not
+ * even computed and the JIT removes the rest.
+ */
+@Category("QEats")
+@StackTrace(false)
+abstract class StageEvent extends Event {
+
+  // Geohash precision of locations; as coarse as the cache cells.
+  private static final int GEOHASH_PRECISION = 7;
+
+  @Label("Stage")
+  String stage;
+
+  StageEvent() {
+    begin();
+  }
+
+  static String geohash(Double latitude, Double longitude) {
+    if (latitude == null || longitude == null) {
+      return null;
+    }
+    return GeoHash.withCharacterPrecision(latitude, longitude, GEOHASH_PRECISION).toBase32();
+  }
+
+  static int length(String query) {
+    return query == null ? 0 : query.length();
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Heap allocated by the current thread, from the JVM's per-thread allocation counters.
+ *
+ * <p>The counters only grow, so what a piece of work allocates is the difference of two
+ * readings taken on the thread that does it. JVMs without the counters, or with them turned
+ * off, read as allocating nothing.
+ */
+public final class ThreadAllocation {
+
+  private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+  private ThreadAllocation() {
+  }
+
+  public static boolean isSupported() {
+    return THREADS != null;
+  }
+
+  /**
+   * Bytes allocated by the current thread since it started.
+   *
+   * @return the bytes, or -1 if the JVM does not count them
+   */
+  public static long currentThreadBytes() {
+    return THREADS == null ? -1 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Bytes allocated by the current thread since an earlier reading on the same thread.
+   *
+   * @param startBytes the earlier {@link #currentThreadBytes()}
+   * @return the bytes, or 0 if the JVM does not count them
+   */
+  public static long since(long startBytes) {
+    long currentBytes = currentThreadBytes();
+    return startBytes < 0 || currentBytes < 0 ? 0 : currentBytes - startBytes;
+  }
+
+  private static com.sun.management.ThreadMXBean threads() {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+      return null;
+    }
+    com.sun.management.ThreadMXBean hotspotThreads = (com.sun.management.ThreadMXBean) threads;
+    return hotspotThreads.isThreadAllocatedMemorySupported()
+        && hotspotThreads.isThreadAllocatedMemoryEnabled() ? hotspotThreads : null;
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps /actuator/health out of service (HTTP 503) until the warmup is done, so that it can
+ * serve as the readiness probe of a starting instance.
+ */
+@Component("warmup")
+public class WarmupHealthIndicator implements HealthIndicator {
+
+  @Autowired
+  private CacheWarmer cacheWarmer;
+
+  @Override
+  public Health health() {
+    if (!cacheWarmer.isDone()) {
+      return Health.outOfService().withDetail("warmup", "in progress").build();
+    }
+    return Health.up().build();
+  }
+}
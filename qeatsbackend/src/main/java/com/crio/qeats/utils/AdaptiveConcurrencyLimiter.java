@@ -0,0 +1,126 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+/**
+ * Concurrency limit that adapts to the latency gradient of the requests it admits.
+ *
+ * <p>The limit shrinks when the observed latency grows above the best latency seen recently
+ * (queueing somewhere downstream) and grows by a small headroom while latency stays flat.
+ * Latency is compared per priority, since a cheap nearby request and an expensive search are
+ * not slow for the same reasons. Each priority below the first may only use a share of the
+ * limit, so that lower priorities are refused first as the system saturates.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+  /**
+   * Traffic classes in decreasing order of priority.
+   */
+  public enum Priority {
+    NEARBY,
+    SEARCH
+  }
+
+  // Latency may grow by this factor over the minimum before the limit starts to shrink.
+  private static final double RTT_TOLERANCE = 1.5;
+
+  // Weight of a new limit estimate, so one slow request does not halve the limit.
+  private static final double SMOOTHING = 0.2;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final double searchShare;
+  private final int minRttResetSamples;
+
+  private double limit;
+  private int inFlight;
+
+  // Per priority, by ordinal.
+  private final int[] inFlightByPriority = new int[Priority.values().length];
+  private final long[] minRttNanos = new long[Priority.values().length];
+  private final int[] samplesSinceReset = new int[Priority.values().length];
+
+  /**
+   * Creates a limiter.
+   *
+   * @param initialLimit concurrency allowed before any latency was observed
+   * @param minLimit lower bound of the limit
+   * @param maxLimit upper bound of the limit
+   * @param searchShare fraction of the limit search traffic may use, between 0 and 1
+   * @param minRttResetSamples samples after which the minimum latency is measured again
+   */
+  public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+      double searchShare, int minRttResetSamples) {
+    this.limit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.searchShare = searchShare;
+    this.minRttResetSamples = minRttResetSamples;
+  }
+
+  /**
+   * Admits a request if its priority has room under the current limit.
+   *
+   * @param priority class of the request
+   * @return true if admitted, in which case {@link #release(Priority, long)} must follow
+   */
+  public synchronized boolean tryAcquire(Priority priority) {
+    if (inFlight >= limit) {
+      return false;
+    }
+    // Lower priorities are only held to their share of the limit, not to what the others use.
+    if (priority == Priority.SEARCH
+        && inFlightByPriority[priority.ordinal()] >= Math.max(1, limit * searchShare)) {
+      return false;
+    }
+    inFlight++;
+    inFlightByPriority[priority.ordinal()]++;
+    return true;
+  }
+
+  /**
+   * Releases an admitted request and feeds its latency into the limit.
+   *
+   * @param priority class the request was admitted as
+   * @param rttNanos time the request spent being served
+   */
+  public synchronized void release(Priority priority, long rttNanos) {
+    int inFlightAtCompletion = inFlight;
+    inFlight--;
+    inFlightByPriority[priority.ordinal()]--;
+    if (rttNanos <= 0) {
+      return;
+    }
+
+    int index = priority.ordinal();
+    if (++samplesSinceReset[index] >= minRttResetSamples) {
+      minRttNanos[index] = 0;
+      samplesSinceReset[index] = 0;
+    }
+    if (minRttNanos[index] == 0 || rttNanos < minRttNanos[index]) {
+      minRttNanos[index] = rttNanos;
+    }
+
+    double gradient = Math.max(0.5,
+        Math.min(1.0, RTT_TOLERANCE * minRttNanos[index] / rttNanos));
+    double newLimit = limit * gradient;
+    // Only probe upwards when the limit is actually being used.
+    if (inFlightAtCompletion * 2 >= limit) {
+      newLimit += Math.sqrt(limit);
+    }
+    newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+    limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+  }
+
+  public synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+}
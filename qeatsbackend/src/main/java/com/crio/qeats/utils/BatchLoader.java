@@ -0,0 +1,229 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import com.crio.qeats.telemetry.RequestSummary;
+import com.crio.qeats.telemetry.ThreadAllocation;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Collects key lookups from concurrent callers and serves them with one batched query.
+ *
+ * <p>Keys are buffered for at most {@code windowMillis} or until {@code maxBatchSize} distinct
+ * keys are pending, whichever comes first. The batch query receives the de-duplicated keys and
+ * every caller gets back the results whose keys intersect with the keys it asked for, in the
+ * order the batch query returned them.
+ *
+ * <p>Batch queries run on the dispatch executor, including the ones of batches filled up
+ * before the window ends, so that a query shared by several callers does not run under the
+ * request context of the one that happened to fill it. What a batch allocates is charged to the
+ * callers it served in equal shares. A window of zero disables batching and queries directly on
+ * the caller's thread.
+ *
+ * <p>Callers with a {@link RequestContext} deadline wait for the batch until it expires, and
+ * get an empty list if it does first, or if the batch failed after it did.
+ */
+public class BatchLoader<K, V> {
+
+  private final Function<List<K>, List<V>> batchQuery;
+  private final Function<V, Collection<K>> keysOf;
+  private final long windowMillis;
+  private final int maxBatchSize;
+  private final ScheduledExecutorService timer;
+  private final Executor dispatchExecutor;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private List<PendingLoad<K, V>> pendingLoads = new ArrayList<>();
+  private Set<K> pendingKeys = new LinkedHashSet<>();
+
+  /**
+   * Creates a loader.
+   *
+   * @param batchQuery runs one query for a list of distinct keys
+   * @param keysOf keys a result answers, used to fan results back out to callers
+   * @param windowMillis how long to wait for more keys before querying; 0 disables batching
+   * @param maxBatchSize number of distinct keys that triggers an immediate query
+   * @param timer schedules the end of a batching window
+   * @param dispatchExecutor runs batch queries
+   */
+  public BatchLoader(Function<List<K>, List<V>> batchQuery, Function<V, Collection<K>> keysOf,
+      long windowMillis, int maxBatchSize, ScheduledExecutorService timer,
+      Executor dispatchExecutor) {
+    this.batchQuery = batchQuery;
+    this.keysOf = keysOf;
+    this.windowMillis = windowMillis;
+    this.maxBatchSize = maxBatchSize;
+    this.timer = timer;
+    this.dispatchExecutor = dispatchExecutor;
+  }
+
+  /**
+   * Loads the results for the keys, possibly sharing a query with concurrent callers.
+   *
+   * @param keys keys to look up
+   * @return results answering any of the keys; empty list if there are none or the current
+   *     request ran out of time waiting for them
+   */
+  public List<V> load(Collection<K> keys) {
+    if (keys.isEmpty()) {
+      return new ArrayList<>();
+    }
+    if (windowMillis <= 0) {
+      return batchQuery.apply(new ArrayList<>(new LinkedHashSet<>(keys)));
+    }
+
+    PendingLoad<K, V> load = new PendingLoad<>(new LinkedHashSet<>(keys));
+    List<PendingLoad<K, V>> fullBatch = null;
+    boolean startWindow;
+    lock.lock();
+    try {
+      startWindow = pendingLoads.isEmpty();
+      pendingLoads.add(load);
+      pendingKeys.addAll(keys);
+      if (pendingKeys.size() >= maxBatchSize) {
+        fullBatch = takePending();
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    if (fullBatch != null) {
+      dispatchLater(fullBatch);
+    } else if (startWindow) {
+      timer.schedule(() -> dispatchExecutor.execute(this::flush), windowMillis,
+          TimeUnit.MILLISECONDS);
+    }
+    return await(load.result);
+  }
+
+  /**
+   * Queries for whatever is pending right now.
+   */
+  public void flush() {
+    List<PendingLoad<K, V>> batch;
+    lock.lock();
+    try {
+      batch = takePending();
+    } finally {
+      lock.unlock();
+    }
+    if (!batch.isEmpty()) {
+      dispatch(batch);
+    }
+  }
+
+  private List<PendingLoad<K, V>> takePending() {
+    List<PendingLoad<K, V>> batch = pendingLoads;
+    pendingLoads = new ArrayList<>();
+    pendingKeys = new LinkedHashSet<>();
+    return batch;
+  }
+
+  private void dispatchLater(List<PendingLoad<K, V>> batch) {
+    try {
+      dispatchExecutor.execute(() -> dispatch(batch));
+    } catch (RejectedExecutionException e) {
+      for (PendingLoad<K, V> load : batch) {
+        load.result.completeExceptionally(e);
+      }
+    }
+  }
+
+  private void dispatch(List<PendingLoad<K, V>> batch) {
+    long startBytes = ThreadAllocation.currentThreadBytes();
+    Set<K> distinctKeys = new LinkedHashSet<>();
+    for (PendingLoad<K, V> load : batch) {
+      distinctKeys.addAll(load.keys);
+    }
+
+    List<V> results;
+    try {
+      results = batchQuery.apply(new ArrayList<>(distinctKeys));
+    } catch (RuntimeException | Error e) {
+      chargeAllocation(batch, ThreadAllocation.since(startBytes));
+      for (PendingLoad<K, V> load : batch) {
+        load.result.completeExceptionally(e);
+      }
+      return;
+    }
+
+    List<List<V>> answers = new ArrayList<>(batch.size());
+    for (PendingLoad<K, V> load : batch) {
+      List<V> answered = new ArrayList<>();
+      for (V result : results) {
+        if (!Collections.disjoint(load.keys, keysOf.apply(result))) {
+          answered.add(result);
+        }
+      }
+      answers.add(answered);
+    }
+    // Charged before completing, so that a caller's summary is whole once it has its results.
+    chargeAllocation(batch, ThreadAllocation.since(startBytes));
+    for (int i = 0; i < batch.size(); i++) {
+      batch.get(i).result.complete(answers.get(i));
+    }
+  }
+
+  private static <K, V> void chargeAllocation(List<PendingLoad<K, V>> batch, long bytes) {
+    long share = bytes / batch.size();
+    for (PendingLoad<K, V> load : batch) {
+      load.summary.addAllocatedBytes(share);
+    }
+  }
+
+  private List<V> await(CompletableFuture<List<V>> result) {
+    try {
+      if (RequestContext.hasDeadline()) {
+        return result.get(RequestContext.remainingMillis(), TimeUnit.MILLISECONDS);
+      }
+      return result.get();
+    } catch (TimeoutException e) {
+      // The batch carries on for the other callers.
+      return new ArrayList<>();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for batched lookup", e);
+    } catch (ExecutionException e) {
+      if (RequestContext.isExpired()) {
+        // Likely failed for running out of time itself; what is left of the request goes on.
+        return new ArrayList<>();
+      }
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  private static class PendingLoad<K, V> {
+    private final Set<K> keys;
+    private final CompletableFuture<List<V>> result = new CompletableFuture<>();
+    private final RequestSummary summary = RequestContext.summary();
+
+    PendingLoad(Set<K> keys) {
+      this.keys = keys;
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calling a failing dependency for a while, then probes it with a single call.
+ *
+ * <p>The breaker opens after {@code failureThreshold} consecutive failures. While open, calls
+ * are refused. After {@code openMillis} one call is let through (half open): its success
+ * closes the breaker, its failure opens it again.
+ */
+public class CircuitBreaker {
+
+  /**
+   * Breaker states.
+   */
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final int failureThreshold;
+  private final long openMillis;
+  private final LongSupplier clockMillis;
+
+  private volatile State state = State.CLOSED;
+  private volatile int consecutiveFailures;
+  private long openedAtMillis;
+
+  public CircuitBreaker(int failureThreshold, long openMillis) {
+    this(failureThreshold, openMillis, System::currentTimeMillis);
+  }
+
+  CircuitBreaker(int failureThreshold, long openMillis, LongSupplier clockMillis) {
+    this.failureThreshold = failureThreshold;
+    this.openMillis = openMillis;
+    this.clockMillis = clockMillis;
+  }
+
+  /**
+   * Asks to make a call.
+   *
+   * @return true if the call may go ahead, in which case its outcome must be reported
+   */
+  public boolean tryAcquire() {
+    if (state == State.CLOSED) {
+      return true;
+    }
+    synchronized (this) {
+      if (state == State.OPEN && clockMillis.getAsLong() - openedAtMillis >= openMillis) {
+        state = State.HALF_OPEN;
+        return true;
+      }
+      return state == State.CLOSED;
+    }
+  }
+
+  public void onSuccess() {
+    if (state == State.CLOSED && consecutiveFailures == 0) {
+      return;
+    }
+    synchronized (this) {
+      consecutiveFailures = 0;
+      state = State.CLOSED;
+    }
+  }
+
+  /**
+   * Reports a call that was let through but says nothing about the dependency: it never reached
+   * it, or the caller gave up on it early. The breaker stays as it was before, and a half open
+   * breaker lets the next call probe instead.
+   */
+  public synchronized void onNotAttempted() {
+    if (state == State.HALF_OPEN) {
+      state = State.OPEN;
+    }
+  }
+
+  public synchronized void onFailure() {
+    if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+      state = State.OPEN;
+      openedAtMillis = clockMillis.getAsLong();
+      consecutiveFailures = 0;
+    }
+  }
+
+  public State getState() {
+    return state;
+  }
+}
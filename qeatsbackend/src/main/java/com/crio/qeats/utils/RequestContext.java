@@ -0,0 +1,175 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import com.crio.qeats.dto.RestaurantFields;
+import com.crio.qeats.telemetry.RequestSummary;
+import com.crio.qeats.telemetry.ThreadAllocation;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Per-request state carried from the controller down to the repository layer, including onto
+ * the executor threads that serve the request's fan-out.
+ *
+ * <p>The context lives in a thread local. Tasks handed to an executor must be wrapped with
+ * {@link #propagate(Supplier)} to see it. Code running outside a request sees no context, which
+ * means no deadline.
+ *
+ * <p>What the request's thread allocates between {@link #begin(long, RequestSummary)} and
+ * {@link #end()}, and what propagated tasks allocate on other threads, adds to its summary.
+ */
+public class RequestContext {
+
+  private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+
+  private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+  private final long deadlineNanos;
+  private final RequestSummary summary;
+  private final long allocatedBytesAtBegin;
+  private volatile RestaurantFields fields = RestaurantFields.ALL;
+
+  private RequestContext(long deadlineNanos, RequestSummary summary) {
+    this.deadlineNanos = deadlineNanos;
+    this.summary = summary;
+    this.allocatedBytesAtBegin = summary == RequestSummary.NONE
+        ? -1 : ThreadAllocation.currentThreadBytes();
+  }
+
+  /**
+   * Starts a request on the current thread.
+   *
+   * @param timeoutMillis latency budget of the request; 0 or less means no deadline
+   * @return the new context
+   */
+  public static RequestContext begin(long timeoutMillis) {
+    return begin(timeoutMillis, RequestSummary.NONE);
+  }
+
+  /**
+   * Starts a request on the current thread, recording what it does in the given summary.
+   *
+   * @param timeoutMillis latency budget of the request; 0 or less means no deadline
+   * @param summary summary of the request
+   * @return the new context
+   */
+  public static RequestContext begin(long timeoutMillis, RequestSummary summary) {
+    long deadlineNanos = timeoutMillis > 0
+        ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : NO_DEADLINE;
+    RequestContext context = new RequestContext(deadlineNanos, summary);
+    CURRENT.set(context);
+    return context;
+  }
+
+  /**
+   * Ends the request on the current thread.
+   */
+  public static void end() {
+    RequestContext context = CURRENT.get();
+    if (context != null) {
+      context.summary.addAllocatedBytes(ThreadAllocation.since(context.allocatedBytesAtBegin));
+    }
+    CURRENT.remove();
+  }
+
+  /**
+   * Context of the request served by the current thread.
+   *
+   * @return the context or null outside a request
+   */
+  public static RequestContext current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Summary of the request served by the current thread.
+   *
+   * @return the summary, or {@link RequestSummary#NONE} outside a request
+   */
+  public static RequestSummary summary() {
+    RequestContext context = CURRENT.get();
+    return context == null ? RequestSummary.NONE : context.summary;
+  }
+
+  /**
+   * Sets the restaurant fields the current request asked for. Outside a request, does nothing.
+   */
+  public static void setFields(RestaurantFields fields) {
+    RequestContext context = CURRENT.get();
+    if (context != null) {
+      context.fields = fields;
+    }
+  }
+
+  /**
+   * Restaurant fields the current request asked for.
+   *
+   * @return the fields, or {@link RestaurantFields#ALL} outside a request
+   */
+  public static RestaurantFields fields() {
+    RequestContext context = CURRENT.get();
+    return context == null ? RestaurantFields.ALL : context.fields;
+  }
+
+  /**
+   * Checks if the current request has a deadline.
+   */
+  public static boolean hasDeadline() {
+    RequestContext context = CURRENT.get();
+    return context != null && context.deadlineNanos != NO_DEADLINE;
+  }
+
+  /**
+   * Time left before the current request's deadline.
+   *
+   * @return remaining milliseconds, 0 once expired, or {@link Long#MAX_VALUE} without deadline.
+   */
+  public static long remainingMillis() {
+    if (!hasDeadline()) {
+      return Long.MAX_VALUE;
+    }
+    long remainingNanos = CURRENT.get().deadlineNanos - System.nanoTime();
+    return Math.max(0, TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+  }
+
+  /**
+   * Checks if the current request ran out of time.
+   */
+  public static boolean isExpired() {
+    return hasDeadline() && CURRENT.get().deadlineNanos - System.nanoTime() <= 0;
+  }
+
+  /**
+   * Wraps a task so that it runs with the caller's request context.
+   *
+   * @param task task to hand to another thread
+   * @return task that installs the caller's context while it runs
+   */
+  public static <T> Supplier<T> propagate(Supplier<T> task) {
+    RequestContext context = CURRENT.get();
+    return () -> {
+      RequestContext previous = CURRENT.get();
+      CURRENT.set(context);
+      // Run on the request's own thread, the task's allocation is already accounted for.
+      long allocatedBytesAtStart = context == null || context == previous
+          || context.summary == RequestSummary.NONE ? -1 : ThreadAllocation.currentThreadBytes();
+      try {
+        return task.get();
+      } finally {
+        if (allocatedBytesAtStart >= 0) {
+          context.summary.addAllocatedBytes(ThreadAllocation.since(allocatedBytesAtStart));
+        }
+        if (previous == null) {
+          CURRENT.remove();
+        } else {
+          CURRENT.set(previous);
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent computations for the same key.
+ *
+ * <p>The first caller for a key runs the loader; callers arriving while it is in flight wait for
+ * and share its result (or its exception). Nothing is remembered once the computation finishes,
+ * so this is not a cache.
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Runs the loader for the key unless a computation for it is already in flight.
+   *
+   * @param key identifies the computation
+   * @param loader computes the value
+   * @return the value computed by this or the concurrent in-flight call
+   */
+  public V execute(K key, Supplier<V> loader) {
+    CompletableFuture<V> call = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+    if (existing != null) {
+      return await(existing);
+    }
+    try {
+      V value = loader.get();
+      call.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      call.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, call);
+    }
+  }
+
+  /**
+   * Runs the loader for the key on the executor unless a computation for it is already in
+   * flight, and waits for the result for at most the given time.
+   *
+   * <p>A caller that times out leaves the computation running, so that it still completes for
+   * the other callers and for whatever the loader fills.
+   *
+   * @param key identifies the computation
+   * @param loader computes the value
+   * @param executor runs the loader
+   * @param timeoutMillis how long this caller is willing to wait
+   * @return the value computed for the key
+   * @throws TimeoutException if the value is not ready in time
+   */
+  public V execute(K key, Supplier<V> loader, Executor executor, long timeoutMillis)
+      throws TimeoutException {
+    return await(submit(key, loader, executor), timeoutMillis);
+  }
+
+  /**
+   * Runs the loader for the key on the executor unless a computation for it is already in
+   * flight, without waiting for it.
+   *
+   * @param key identifies the computation
+   * @param loader computes the value
+   * @param executor runs the loader
+   * @return completes with the value computed for the key
+   */
+  public CompletableFuture<V> submit(K key, Supplier<V> loader, Executor executor) {
+    CompletableFuture<V> call = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+    if (existing != null) {
+      return existing;
+    }
+    try {
+      executor.execute(() -> {
+        try {
+          call.complete(loader.get());
+        } catch (RuntimeException | Error e) {
+          call.completeExceptionally(e);
+        } finally {
+          inFlight.remove(key, call);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      inFlight.remove(key, call);
+      call.completeExceptionally(e);
+    }
+    return call;
+  }
+
+  /**
+   * Number of keys with a computation in flight.
+   */
+  public int inFlightCount() {
+    return inFlight.size();
+  }
+
+  private V await(CompletableFuture<V> call) {
+    try {
+      return await(call, Long.MAX_VALUE);
+    } catch (TimeoutException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private V await(CompletableFuture<V> call, long timeoutMillis) throws TimeoutException {
+    try {
+      return call.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for in-flight call", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+}
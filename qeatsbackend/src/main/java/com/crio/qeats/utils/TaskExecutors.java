@@ -0,0 +1,71 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Factory for the executors that run blocking work (Mongo queries, Jedis calls).
+ *
+ * <p>Two modes are supported:
+ * <ul>
+ *   <li>{@code platform} - a fixed pool of platform threads.</li>
+ *   <li>{@code virtual} - one virtual thread per task. Only available on a JDK with Loom, so it
+ *   is looked up reflectively and falls back to {@code platform} elsewhere.</li>
+ * </ul>
+ */
+public class TaskExecutors {
+
+  public static final String MODE_PLATFORM = "platform";
+  public static final String MODE_VIRTUAL = "virtual";
+
+  private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualFactory();
+
+  private TaskExecutors() { /* static helpers */ }
+
+  /**
+   * Creates the executor for the given mode.
+   *
+   * @param mode {@code platform} or {@code virtual}
+   * @param poolSize number of threads for the platform pool; ignored for virtual threads
+   * @param threadNamePrefix prefix for platform thread names
+   * @return a new executor; the caller owns its lifecycle
+   */
+  public static ExecutorService newExecutor(String mode, int poolSize, String threadNamePrefix) {
+    if (MODE_VIRTUAL.equalsIgnoreCase(mode) && isVirtualThreadSupported()) {
+      try {
+        return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("Unable to create virtual thread executor", e);
+      }
+    }
+    return Executors.newFixedThreadPool(poolSize, new ThreadFactoryBuilder()
+        .setNameFormat(threadNamePrefix + "-%d")
+        .setDaemon(true)
+        .build());
+  }
+
+  /**
+   * Checks if the running JDK can create virtual threads.
+   *
+   * @return true if {@code Executors.newVirtualThreadPerTaskExecutor()} is available.
+   */
+  public static boolean isVirtualThreadSupported() {
+    return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+  }
+
+  private static Method findVirtualFactory() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+}
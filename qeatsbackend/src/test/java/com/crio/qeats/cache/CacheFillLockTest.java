@@ -0,0 +1,43 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class CacheFillLockTest {
+
+  private CacheFillLock cacheFillLock;
+
+  @BeforeEach
+  void setup() {
+    cacheFillLock = new CacheFillLock();
+    ReflectionTestUtils.setField(cacheFillLock, "waitMillis", 100L);
+    ReflectionTestUtils.setField(cacheFillLock, "pollMillis", 5L);
+  }
+
+  @Test
+  void pollsUntilTheValueShowsUp() {
+    AtomicInteger polls = new AtomicInteger();
+
+    String value = cacheFillLock.awaitValue(
+        () -> polls.incrementAndGet() < 3 ? null : "filled");
+
+    assertEquals("filled", value);
+    assertEquals(3, polls.get());
+  }
+
+  @Test
+  void givesUpOnceTheWaitRunsOut() {
+    assertNull(cacheFillLock.awaitValue(() -> null));
+  }
+}
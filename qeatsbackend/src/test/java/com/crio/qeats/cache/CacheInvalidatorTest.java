@@ -0,0 +1,134 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.utils.GeoLocation;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.clients.jedis.Jedis;
+
+class CacheInvalidatorTest {
+
+  private final Jedis jedis = Mockito.mock(Jedis.class);
+  private final RedisCacheAccess redisCacheAccess = Mockito.mock(RedisCacheAccess.class);
+  private final RestaurantCache restaurantCache = Mockito.mock(RestaurantCache.class);
+  private final NearCache nearCache = Mockito.mock(NearCache.class);
+  private CacheInvalidator cacheInvalidator;
+
+  @BeforeEach
+  void setup() {
+    Mockito.doAnswer(invocation -> {
+      invocation.<Consumer<Jedis>>getArgument(0).accept(jedis);
+      return null;
+    }).when(redisCacheAccess).run(any());
+    Mockito.doAnswer(invocation -> invocation.<Function<Jedis, ?>>getArgument(0).apply(jedis))
+        .when(redisCacheAccess).execute(any(), any());
+
+    cacheInvalidator = new CacheInvalidator();
+    ReflectionTestUtils.setField(cacheInvalidator, "redisCacheAccess", redisCacheAccess);
+    ReflectionTestUtils.setField(cacheInvalidator, "restaurantCache", restaurantCache);
+    ReflectionTestUtils.setField(cacheInvalidator, "nearCache", nearCache);
+    ReflectionTestUtils.setField(cacheInvalidator, "cellRadiusInKms", 5.0);
+    ReflectionTestUtils.setField(cacheInvalidator, "redeleteMillis", 0L);
+    cacheInvalidator.init();
+  }
+
+  @AfterEach
+  void teardown() {
+    cacheInvalidator.shutdown();
+  }
+
+  @Test
+  void insertsEvictTheRecordAndTheCellsAroundIt() {
+    cached((Restaurant) null);
+
+    cacheInvalidator.onCatalogueChanged(saved("11", 20.0, 30.0));
+
+    verify(restaurantCache).invalidateRestaurant(jedis, "11");
+    verify(restaurantCache).evictCells(eq(jedis),
+        argThat(cells -> cells.equals(RestaurantCache.cellsAround(20.0, 30.0, 5.0))));
+    verify(nearCache).bumpGeneration();
+  }
+
+  @Test
+  void editsInPlaceEvictOnlyTheRecord() {
+    cached(restaurant("11", 20.0, 30.0));
+
+    cacheInvalidator.onCatalogueChanged(saved("11", 20.0, 30.0));
+
+    verify(restaurantCache).invalidateRestaurant(jedis, "11");
+    verify(restaurantCache, never()).evictCells(any(), any());
+    verify(nearCache, never()).bumpGeneration();
+  }
+
+  @Test
+  void movesEvictTheCellsAroundTheNewLocation() {
+    cached(restaurant("11", 20.0, 30.0));
+
+    cacheInvalidator.onCatalogueChanged(saved("11", 20.1, 30.0));
+
+    verify(restaurantCache).evictCells(eq(jedis),
+        argThat(cells -> cells.equals(RestaurantCache.cellsAround(20.1, 30.0, 5.0))));
+    verify(nearCache).bumpGeneration();
+  }
+
+  @Test
+  void deletesEvictTheRecordAndTheNearCaches() {
+    cacheInvalidator.onCatalogueChanged(new CatalogueChangedEvent(this,
+        Collections.singletonList("11"), Collections.singletonList(new GeoLocation(20.0, 30.0)),
+        true));
+
+    verify(restaurantCache).invalidateRestaurant(jedis, "11");
+    verify(restaurantCache, never()).getRestaurants(any(), any());
+    verify(restaurantCache, never()).evictCells(any(), any());
+    verify(nearCache).bumpGeneration();
+  }
+
+  @Test
+  void burstsOfChangesAreDroppedAgainOnce() {
+    ReflectionTestUtils.setField(cacheInvalidator, "redeleteMillis", 50L);
+    cached(restaurant("11", 20.0, 30.0));
+
+    cacheInvalidator.onCatalogueChanged(saved("11", 20.0, 30.0));
+    cacheInvalidator.onCatalogueChanged(saved("11", 20.0, 30.0));
+
+    verify(restaurantCache, timeout(5000).times(3)).invalidateRestaurant(jedis, "11");
+    verify(restaurantCache, after(300).times(3)).invalidateRestaurant(jedis, "11");
+  }
+
+  private void cached(Restaurant restaurant) {
+    when(restaurantCache.getRestaurants(eq(jedis), any()))
+        .thenReturn(Collections.singletonList(restaurant));
+  }
+
+  private CatalogueChangedEvent saved(String restaurantId, double latitude, double longitude) {
+    return new CatalogueChangedEvent(this, Collections.singletonList(restaurantId),
+        Collections.singletonList(new GeoLocation(latitude, longitude)), false);
+  }
+
+  private static Restaurant restaurant(String restaurantId, double latitude, double longitude) {
+    return new Restaurant(restaurantId, "restaurant " + restaurantId, "Hsr Layout",
+        "www.google.com", latitude, longitude, "18:00", "23:00", Arrays.asList("Tamil"));
+  }
+}
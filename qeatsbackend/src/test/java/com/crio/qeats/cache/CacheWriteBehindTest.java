@@ -0,0 +1,110 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.clients.jedis.Jedis;
+import redis.embedded.RedisServer;
+
+class CacheWriteBehindTest {
+
+  private static final int REDIS_PORT = 6392;
+
+  private RedisServer redisServer;
+  private Jedis jedis;
+  private RedisCacheAccess redisCacheAccess;
+  private CacheWriteBehind cacheWriteBehind;
+
+  @BeforeEach
+  void setup() throws IOException {
+    redisServer = new RedisServer(REDIS_PORT);
+    redisServer.start();
+    jedis = new Jedis("localhost", REDIS_PORT);
+
+    redisCacheAccess = Mockito.mock(RedisCacheAccess.class);
+    Mockito.doAnswer(invocation -> {
+      try (Jedis connection = new Jedis("localhost", REDIS_PORT)) {
+        invocation.<Consumer<Jedis>>getArgument(0).accept(connection);
+      }
+      return null;
+    }).when(redisCacheAccess).run(any());
+
+    cacheWriteBehind = new CacheWriteBehind();
+    ReflectionTestUtils.setField(cacheWriteBehind, "redisCacheAccess", redisCacheAccess);
+    ReflectionTestUtils.setField(cacheWriteBehind, "enabled", true);
+    ReflectionTestUtils.setField(cacheWriteBehind, "queueCapacity", 2);
+    ReflectionTestUtils.setField(cacheWriteBehind, "batchSize", 64);
+  }
+
+  @AfterEach
+  void teardown() {
+    cacheWriteBehind.shutdown();
+    jedis.close();
+    redisServer.stop();
+  }
+
+  @Test
+  void writesLandInTheBackground() throws InterruptedException {
+    cacheWriteBehind.init();
+
+    assertTrue(cacheWriteBehind.submit(pipeline -> pipeline.setex("tdr1w", 60, "11")));
+    assertTrue(cacheWriteBehind.submit(pipeline -> pipeline.setex("tdr1x", 60, "12")));
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (jedis.get("tdr1x") == null && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals("11", jedis.get("tdr1w"));
+    assertEquals("12", jedis.get("tdr1x"));
+  }
+
+  @Test
+  void writesAreDroppedWhenTheQueueIsFull() throws InterruptedException {
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    cacheWriteBehind.init();
+
+    // Keep the writer busy with the first write, then fill the queue behind it.
+    assertTrue(cacheWriteBehind.submit(pipeline -> {
+      writing.countDown();
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }));
+    assertTrue(writing.await(5, TimeUnit.SECONDS));
+    assertTrue(cacheWriteBehind.submit(pipeline -> pipeline.setex("tdr1w", 60, "11")));
+    assertTrue(cacheWriteBehind.submit(pipeline -> pipeline.setex("tdr1x", 60, "12")));
+
+    assertFalse(cacheWriteBehind.submit(pipeline -> pipeline.setex("tdr1y", 60, "13")));
+    release.countDown();
+  }
+
+  @Test
+  void writesAreSynchronousWhenDisabled() {
+    ReflectionTestUtils.setField(cacheWriteBehind, "enabled", false);
+    cacheWriteBehind.init();
+
+    assertTrue(cacheWriteBehind.submit(pipeline -> pipeline.setex("tdr1w", 60, "11")));
+
+    assertEquals("11", jedis.get("tdr1w"));
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class EarlyRefreshPolicyTest {
+
+  private static final long NOW = 1_000_000L;
+
+  @Test
+  void staleEntriesAreAlwaysRefreshed() {
+    CellEntry stale = new CellEntry(new ArrayList<>(), NOW - 1, 100);
+
+    assertTrue(new EarlyRefreshPolicy(0).shouldRefresh(stale, NOW, 0.0));
+  }
+
+  @Test
+  void refreshesGetLikelierNearExpiryAndForCostlyEntries() {
+    EarlyRefreshPolicy policy = new EarlyRefreshPolicy(1.0);
+    // -ln(1 - 0.9) is about 2.3 compute times ahead of expiry.
+    double random = 0.9;
+
+    assertFalse(policy.shouldRefresh(new CellEntry(new ArrayList<>(), NOW + 1000, 100),
+        NOW, random));
+    assertTrue(policy.shouldRefresh(new CellEntry(new ArrayList<>(), NOW + 200, 100),
+        NOW, random));
+    assertTrue(policy.shouldRefresh(new CellEntry(new ArrayList<>(), NOW + 1000, 500),
+        NOW, random));
+  }
+
+  @Test
+  void zeroBetaOnlyRefreshesStaleEntries() {
+    EarlyRefreshPolicy policy = new EarlyRefreshPolicy(0);
+
+    assertFalse(policy.shouldRefresh(new CellEntry(new ArrayList<>(), NOW + 1, 100_000),
+        NOW, 0.999));
+  }
+
+  @Test
+  void cellEntriesRoundTrip() {
+    CellEntry cell = new CellEntry(Arrays.asList("11", "12"), NOW, 42);
+
+    assertEquals(cell, CellEntry.decode(cell.encode(2), 2));
+    assertEquals(new ArrayList<>(),
+        CellEntry.decode(new CellEntry(new ArrayList<>(), NOW, 1).encode(2), 2).getRestaurantIds());
+    assertNull(CellEntry.decode("11,12", 2));
+    assertNull(CellEntry.decode(cell.encode(1), 2));
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.dto.Restaurant;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import org.junit.jupiter.api.Test;
+
+class JacksonCacheCodecTest {
+
+  private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+  @Test
+  void restaurantsRoundTripBehindTheirVersion() throws IOException {
+    JacksonCacheCodec codec = new JacksonCacheCodec(smileMapper);
+    Restaurant restaurant = restaurants(1).get(0);
+
+    byte[] encoded = codec.encodeRestaurant(restaurant);
+
+    assertEquals(CacheSchema.CURRENT_VERSION, encoded[0]);
+    assertEquals(restaurant, codec.decodeRestaurant(encoded));
+  }
+
+  @Test
+  void smileIsSmallerThanJson() throws IOException {
+    Restaurant restaurant = restaurants(1).get(0);
+
+    byte[] json = new JacksonCacheCodec(new ObjectMapper()).encodeRestaurant(restaurant);
+    byte[] smile = new JacksonCacheCodec(smileMapper).encodeRestaurant(restaurant);
+
+    assertTrue(smile.length < json.length);
+  }
+
+  @Test
+  void entriesOfAnotherFormatAreRejected() {
+    JacksonCacheCodec codec = new JacksonCacheCodec(smileMapper);
+
+    assertThrows(IOException.class,
+        () -> codec.decodeRestaurant("{\"restaurantId\":\"11\"}"
+            .getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  void olderEntriesAreUpgradedAndNewerOnesRejected() throws IOException {
+    // Version 3 renamed "title" back to "name".
+    JacksonCacheCodec version2 = new JacksonCacheCodec(smileMapper, 2, Collections.emptyMap());
+    Map<Integer, UnaryOperator<ObjectNode>> upgrades = new HashMap<>();
+    upgrades.put(2, node -> {
+      if (node.has("title")) {
+        node.set("name", node.remove("title"));
+      }
+      return node;
+    });
+    JacksonCacheCodec version3 = new JacksonCacheCodec(smileMapper, 3, upgrades);
+    Restaurant restaurant = restaurants(1).get(0);
+    ObjectNode old = smileMapper.valueToTree(restaurant);
+    old.set("title", old.remove("name"));
+    byte[] payload = smileMapper.writeValueAsBytes(old);
+    byte[] encoded = new byte[payload.length + 1];
+    encoded[0] = 2;
+    System.arraycopy(payload, 0, encoded, 1, payload.length);
+
+    assertEquals(restaurant, version3.decodeRestaurant(encoded));
+    assertEquals(restaurant, version3.decodeRestaurant(version2.encodeRestaurant(restaurant)));
+    assertThrows(IOException.class,
+        () -> version2.decodeRestaurant(version3.encodeRestaurant(restaurant)));
+  }
+
+  private static List<Restaurant> restaurants(int count) {
+    List<Restaurant> restaurants = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      restaurants.add(new Restaurant(String.valueOf(i), "restaurant " + i, "Hsr Layout",
+          "www.google.com", 20.0 + i / 1000.0, 30.0, "18:00", "23:00",
+          Arrays.asList("Tamil", "South Indian")));
+    }
+    return restaurants;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+
+import com.crio.qeats.dto.Restaurant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class NearCacheTest {
+
+  private NearCache nearCache;
+
+  @BeforeEach
+  void setup() {
+    nearCache = new NearCache();
+    // No Redis: the generation stays where the test puts it.
+    ReflectionTestUtils.setField(nearCache, "redisCacheAccess",
+        Mockito.mock(RedisCacheAccess.class));
+    ReflectionTestUtils.setField(nearCache, "enabled", true);
+    ReflectionTestUtils.setField(nearCache, "maxWeight", 1000L);
+    ReflectionTestUtils.setField(nearCache, "ttlSeconds", 60L);
+    ReflectionTestUtils.setField(nearCache, "generationPollMillis", 60000L);
+    nearCache.init();
+  }
+
+  @AfterEach
+  void teardown() {
+    nearCache.shutdown();
+  }
+
+  @Test
+  void generationIsPolledForTheResponseCacheAlone() throws InterruptedException {
+    RedisCacheAccess redisCacheAccess = Mockito.mock(RedisCacheAccess.class);
+    Mockito.when(redisCacheAccess.execute(any(), any())).thenReturn(5L);
+    NearCache responseCacheOnly = new NearCache();
+    ReflectionTestUtils.setField(responseCacheOnly, "redisCacheAccess", redisCacheAccess);
+    ReflectionTestUtils.setField(responseCacheOnly, "enabled", false);
+    ReflectionTestUtils.setField(responseCacheOnly, "responseCacheEnabled", true);
+    ReflectionTestUtils.setField(responseCacheOnly, "maxWeight", 1000L);
+    ReflectionTestUtils.setField(responseCacheOnly, "ttlSeconds", 60L);
+    ReflectionTestUtils.setField(responseCacheOnly, "generationPollMillis", 60000L);
+    responseCacheOnly.init();
+    try {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (responseCacheOnly.currentGeneration() != 5L && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      assertEquals(5L, responseCacheOnly.currentGeneration());
+    } finally {
+      responseCacheOnly.shutdown();
+    }
+  }
+
+  @Test
+  void hitsShareOneUnmodifiableList() {
+    List<Restaurant> restaurants = restaurants("11", "12");
+    nearCache.put("tdr1w", nearCache.currentGeneration(), restaurants);
+    restaurants.clear();
+
+    List<Restaurant> first = nearCache.get("tdr1w");
+    List<Restaurant> second = nearCache.get("tdr1w");
+
+    assertEquals(2, second.size());
+    assertSame(first, second);
+    assertThrows(UnsupportedOperationException.class, () -> first.remove(0));
+  }
+
+  @Test
+  void entriesOfAnOlderGenerationAreMisses() {
+    long generation = nearCache.currentGeneration();
+    nearCache.put("tdr1w", generation, restaurants("11"));
+
+    ReflectionTestUtils.setField(nearCache, "generation", generation + 1);
+
+    assertNull(nearCache.get("tdr1w"));
+    nearCache.put("tdr1w", generation, restaurants("11"));
+    assertNull(nearCache.get("tdr1w"));
+  }
+
+  @Test
+  void destroyingTheCacheClearsTheNearCache() {
+    nearCache.put("tdr1w", nearCache.currentGeneration(), restaurants("11"));
+
+    nearCache.onCacheDestroyed(new CacheDestroyedEvent(this));
+
+    assertNull(nearCache.get("tdr1w"));
+  }
+
+  private static List<Restaurant> restaurants(String... ids) {
+    List<Restaurant> restaurants = new ArrayList<>();
+    for (String id : ids) {
+      restaurants.add(new Restaurant(id, "restaurant " + id, "city", "url", 20.0, 30.0,
+          "18:00", "23:00", Arrays.asList("Tamil")));
+    }
+    return restaurants;
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.configs.DeadlineAwareJedisPool;
+import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.utils.CircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.clients.jedis.Client;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+class RedisCacheAccessTest {
+
+  private static final int POOL_SO_TIMEOUT_MILLIS = 200;
+
+  private final Client client = mock(Client.class);
+  private RedisCacheAccess redisCacheAccess;
+
+  @BeforeEach
+  void setup() {
+    DeadlineAwareJedisPool pool = mock(DeadlineAwareJedisPool.class);
+    Jedis jedis = mock(Jedis.class);
+    when(pool.getSoTimeoutMillis()).thenReturn(POOL_SO_TIMEOUT_MILLIS);
+    when(pool.getResource()).thenReturn(jedis);
+    when(jedis.getClient()).thenReturn(client);
+    RedisConfiguration redisConfiguration = mock(RedisConfiguration.class);
+    when(redisConfiguration.getJedisPool()).thenReturn(pool);
+
+    redisCacheAccess = new RedisCacheAccess();
+    ReflectionTestUtils.setField(redisCacheAccess, "redisConfiguration", redisConfiguration);
+    ReflectionTestUtils.setField(redisCacheAccess, "failureThreshold", 5);
+    ReflectionTestUtils.setField(redisCacheAccess, "openMillis", 5000L);
+    redisCacheAccess.init();
+  }
+
+  @Test
+  void timeoutsAtThePoolsReadTimeoutOpenTheBreaker() {
+    when(client.getSoTimeout()).thenReturn(POOL_SO_TIMEOUT_MILLIS);
+
+    for (int i = 0; i < 5; i++) {
+      assertEquals("fallback", timeOut());
+    }
+
+    assertEquals(CircuitBreaker.State.OPEN, redisCacheAccess.getBreakerState());
+  }
+
+  @Test
+  void timeoutsOnWhatWasLeftOfTheRequestsBudgetDoNotOpenTheBreaker() {
+    when(client.getSoTimeout()).thenReturn(3);
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals("fallback", timeOut());
+    }
+
+    assertEquals(CircuitBreaker.State.CLOSED, redisCacheAccess.getBreakerState());
+  }
+
+  private String timeOut() {
+    return redisCacheAccess.execute(jedis -> {
+      throw new JedisConnectionException("Read timed out");
+    }, () -> "fallback");
+  }
+}
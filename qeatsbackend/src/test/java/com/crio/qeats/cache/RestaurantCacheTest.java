@@ -0,0 +1,191 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.hsr.geohash.GeoHash;
+import ch.hsr.geohash.WGS84Point;
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.utils.GeoUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.clients.jedis.Jedis;
+import redis.embedded.RedisServer;
+
+class RestaurantCacheTest {
+
+  private static final int REDIS_PORT = 6391;
+
+  private RedisServer redisServer;
+  private Jedis jedis;
+  private RestaurantCache restaurantCache;
+
+  @BeforeEach
+  void setup() throws IOException {
+    redisServer = new RedisServer(REDIS_PORT);
+    redisServer.start();
+    jedis = new Jedis("localhost", REDIS_PORT);
+    restaurantCache = restaurantCache(
+        new JacksonCacheCodec(new ObjectMapper(new SmileFactory())));
+  }
+
+  @AfterEach
+  void teardown() {
+    jedis.close();
+    redisServer.stop();
+  }
+
+  @Test
+  void cellsShareRestaurantRecords() throws IOException {
+    Restaurant shared = restaurant("11");
+    restaurantCache.putCell(jedis, "tdr1w", Arrays.asList(shared, restaurant("12")), 5);
+    restaurantCache.putCell(jedis, "tdr1x", Arrays.asList(shared), 5);
+
+    assertEquals(Arrays.asList("11", "12"),
+        restaurantCache.getCell(jedis, "tdr1w").getRestaurantIds());
+    assertEquals(Arrays.asList("11"), restaurantCache.getCell(jedis, "tdr1x").getRestaurantIds());
+    // Two cells and two restaurant records.
+    assertEquals(Long.valueOf(4), jedis.dbSize());
+
+    List<Restaurant> restaurants =
+        restaurantCache.getRestaurants(jedis, Arrays.asList("11", "12"));
+    assertEquals(Arrays.asList(shared, restaurant("12")), restaurants);
+  }
+
+  @Test
+  void invalidatingARestaurantTouchesOnlyItsRecord() throws IOException {
+    restaurantCache.putCell(jedis, "tdr1w", Arrays.asList(restaurant("11"), restaurant("12")),
+        5);
+
+    restaurantCache.invalidateRestaurant(jedis, "11");
+
+    assertEquals(Arrays.asList("11", "12"),
+        restaurantCache.getCell(jedis, "tdr1w").getRestaurantIds());
+    List<Restaurant> restaurants =
+        restaurantCache.getRestaurants(jedis, Arrays.asList("11", "12"));
+    assertNull(restaurants.get(0));
+    assertEquals(restaurant("12"), restaurants.get(1));
+  }
+
+  @Test
+  void invalidatingARestaurantDropsTheRecordsOfTheNextVersion() throws IOException {
+    RestaurantCache nextCache = restaurantCache(new JacksonCacheCodec(
+        new ObjectMapper(new SmileFactory()), 2, Collections.emptyMap()));
+    nextCache.putRestaurants(jedis, Arrays.asList(restaurant("11")));
+
+    restaurantCache.invalidateRestaurant(jedis, "11");
+
+    assertNull(nextCache.getRestaurants(jedis, Arrays.asList("11")).get(0));
+  }
+
+  @Test
+  void cellsOutliveTheirFreshnessByTheStaleWindow() throws IOException {
+    long before = System.currentTimeMillis();
+    restaurantCache.putCell(jedis, "tdr1w", Arrays.asList(restaurant("11")), 5);
+
+    CellEntry cell = restaurantCache.getCell(jedis, "tdr1w");
+    assertTrue(cell.getExpiresAtMillis() >= before + 60_000);
+    assertEquals(5, cell.getComputeMillis());
+    assertTrue(jedis.ttl(restaurantCache.cellKey("tdr1w")) > 60);
+    assertTrue(jedis.ttl(RestaurantCache.RESTAURANT_KEY_PREFIX + "11") > 60);
+  }
+
+  @Test
+  void recordsOfThePreviousVersionAreUpgradedInPlace() throws IOException {
+    JacksonCacheCodec version2 = new JacksonCacheCodec(new ObjectMapper(new SmileFactory()),
+        2, Collections.singletonMap(1, UnaryOperator.identity()));
+    RestaurantCache nextCache = restaurantCache(version2);
+    restaurantCache.putRestaurants(jedis, Arrays.asList(restaurant("11")));
+
+    List<Restaurant> restaurants = nextCache.getRestaurants(jedis, Arrays.asList("11", "12"));
+
+    assertEquals(restaurant("11"), restaurants.get(0));
+    assertNull(restaurants.get(1));
+    byte[] upgraded = jedis.get("restaurant:v2:11".getBytes(StandardCharsets.UTF_8));
+    assertEquals(restaurant("11"), version2.decodeRestaurant(upgraded));
+  }
+
+  @Test
+  void cellsOfAnotherVersionAreMisses() throws IOException {
+    RestaurantCache nextCache = restaurantCache(new JacksonCacheCodec(
+        new ObjectMapper(new SmileFactory()), 2, Collections.emptyMap()));
+    restaurantCache.putCell(jedis, "tdr1w", Arrays.asList(restaurant("11")), 5);
+    nextCache.putCell(jedis, "tdr1x", Arrays.asList(restaurant("11")), 5);
+    // A cell of another layout under the current key is not misread either.
+    jedis.set(restaurantCache.cellKey("tdr1y"), "[{\"restaurantId\":\"11\"}]");
+
+    assertNull(nextCache.getCell(jedis, "tdr1w"));
+    assertNull(restaurantCache.getCell(jedis, "tdr1x"));
+    assertNull(restaurantCache.getCell(jedis, "tdr1y"));
+    assertEquals(Arrays.asList("11"), restaurantCache.getCell(jedis, "tdr1w").getRestaurantIds());
+  }
+
+  @Test
+  void cellsAroundAPointAreTheCellsListingIt() {
+    Set<String> cells = RestaurantCache.cellsAround(20.0, 30.0, 5.0);
+
+    assertTrue(cells.contains(cellAt(20.0, 30.0)));
+    // About 4.4 km and 6.7 km north.
+    assertTrue(cells.contains(cellAt(20.04, 30.0)));
+    assertFalse(cells.contains(cellAt(20.06, 30.0)));
+    for (String cellKey : cells) {
+      GeoHash cell = GeoHash.fromGeohashString(cellKey);
+      WGS84Point center = cell.getBoundingBoxCenterPoint();
+      assertTrue(GeoUtils.findDistanceInKm(center.getLatitude(), center.getLongitude(), 20.0,
+          30.0) < 5.0 + RestaurantCache.cellSlackInKms(cell));
+    }
+  }
+
+  @Test
+  void evictedCellsAreMisses() throws IOException {
+    restaurantCache.putCell(jedis, "tdr1w", Arrays.asList(restaurant("11")), 5);
+    restaurantCache.putCell(jedis, "tdr1x", Arrays.asList(restaurant("11")), 5);
+
+    restaurantCache.evictCells(jedis, Arrays.asList("tdr1w", "tdr1y"));
+
+    assertNull(restaurantCache.getCell(jedis, "tdr1w"));
+    assertEquals(Arrays.asList("11"), restaurantCache.getCell(jedis, "tdr1x").getRestaurantIds());
+  }
+
+  @Test
+  void uncachedCellIsAMiss() {
+    assertNull(restaurantCache.getCell(jedis, "tdr1w"));
+  }
+
+  private static RestaurantCache restaurantCache(CacheCodec cacheCodec) {
+    RestaurantCache restaurantCache = new RestaurantCache();
+    ReflectionTestUtils.setField(restaurantCache, "cacheCodec", cacheCodec);
+    ReflectionTestUtils.setField(restaurantCache, "ttlSeconds", 60);
+    ReflectionTestUtils.setField(restaurantCache, "staleSeconds", 30);
+    return restaurantCache;
+  }
+
+  private static String cellAt(double latitude, double longitude) {
+    return GeoHash.withCharacterPrecision(latitude, longitude, RestaurantCache.CELL_PRECISION)
+        .toBase32();
+  }
+
+  private static Restaurant restaurant(String id) {
+    return new Restaurant(id, "restaurant " + id, "Hsr Layout", "www.google.com", 20.0, 30.0,
+        "18:00", "23:00", Arrays.asList("Tamil"));
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import com.crio.qeats.cache.NearCache;
+import com.crio.qeats.cache.ResponseCache;
+import com.crio.qeats.telemetry.HotKeyTracker;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+
+class ResponseCacheFilterTest {
+
+  private final List<String> handledLatitudes = new ArrayList<>();
+  private ResponseCacheFilter filter;
+
+  @BeforeEach
+  void setup() {
+    ResponseCache responseCache = new ResponseCache();
+    ReflectionTestUtils.setField(responseCache, "nearCache", Mockito.mock(NearCache.class));
+    ReflectionTestUtils.setField(responseCache, "maxBytes", 1L << 20);
+    ReflectionTestUtils.setField(responseCache, "slotMinutes", 1);
+    ReflectionTestUtils.setField(responseCache, "gzipMinBytes", 64);
+    responseCache.init();
+    filter = new ResponseCacheFilter(responseCache, Mockito.mock(HotKeyTracker.class));
+  }
+
+  @Test
+  void repeatedRequestsOfACellAreServedFromTheCache() throws Exception {
+    MockHttpServletResponse first = perform(request("20.0", "30.0"));
+    MockHttpServletResponse second = perform(request("20.0001", "30.0001"));
+
+    assertEquals(1, handledLatitudes.size());
+    assertNotEquals("20.0", handledLatitudes.get(0));
+    assertEquals(200, second.getStatus());
+    assertEquals(first.getContentAsString(), second.getContentAsString());
+    assertEquals("application/json", second.getContentType());
+    assertNotNull(first.getHeader(HttpHeaders.ETAG));
+    assertEquals(first.getHeader(HttpHeaders.ETAG), second.getHeader(HttpHeaders.ETAG));
+  }
+
+  @Test
+  void currentEtagsGetANotModified() throws Exception {
+    String etag = perform(request("20.0", "30.0")).getHeader(HttpHeaders.ETAG);
+
+    MockHttpServletRequest conditional = request("20.0", "30.0");
+    conditional.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+    MockHttpServletResponse response = perform(conditional);
+
+    assertEquals(304, response.getStatus());
+    assertEquals(0, response.getContentAsByteArray().length);
+  }
+
+  @Test
+  void gzipIsServedToClientsAcceptingIt() throws Exception {
+    MockHttpServletResponse plain = perform(request("20.0", "30.0"));
+
+    MockHttpServletRequest request = request("20.0", "30.0");
+    request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+    MockHttpServletResponse gzipped = perform(request);
+
+    assertEquals("gzip", gzipped.getHeader(HttpHeaders.CONTENT_ENCODING));
+    assertNotEquals(plain.getHeader(HttpHeaders.ETAG), gzipped.getHeader(HttpHeaders.ETAG));
+    byte[] body = StreamUtils.copyToByteArray(
+        new GZIPInputStream(new ByteArrayInputStream(gzipped.getContentAsByteArray())));
+    assertArrayEquals(plain.getContentAsByteArray(), body);
+  }
+
+  @Test
+  void searchesAreNotCached() throws Exception {
+    MockHttpServletRequest request = request("20.0", "30.0");
+    request.setParameter("searchFor", "biryani");
+    perform(request);
+    perform(request);
+
+    assertEquals(2, handledLatitudes.size());
+    assertEquals("20.0", handledLatitudes.get(0));
+  }
+
+  @Test
+  void fieldSelectionsAreCachedApart() throws Exception {
+    perform(request("20.0", "30.0"));
+    MockHttpServletRequest some = request("20.0", "30.0");
+    some.setParameter("fields", "name");
+    perform(some);
+    MockHttpServletRequest sameInAnotherOrder = request("20.0", "30.0");
+    sameInAnotherOrder.setParameter("fields", "restaurantId,name");
+    perform(sameInAnotherOrder);
+
+    assertEquals(2, handledLatitudes.size());
+  }
+
+  @Test
+  void partialResponsesAreNotCached() throws Exception {
+    MockHttpServletRequest request = request("20.0", "30.0");
+    request.setAttribute(ResponseCacheFilter.PARTIAL_RESPONSE_ATTRIBUTE, Boolean.TRUE);
+    perform(request);
+    perform(request("20.0", "30.0"));
+
+    assertEquals(2, handledLatitudes.size());
+  }
+
+  private static MockHttpServletRequest request(String latitude, String longitude) {
+    MockHttpServletRequest request =
+        new MockHttpServletRequest("GET", "/qeats/v1/restaurants");
+    request.setParameter("latitude", latitude);
+    request.setParameter("longitude", longitude);
+    return request;
+  }
+
+  private MockHttpServletResponse perform(MockHttpServletRequest request)
+      throws IOException, ServletException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+      @Override
+      protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        handledLatitudes.add(req.getParameter("latitude"));
+        resp.setContentType("application/json");
+        StringBuilder body = new StringBuilder("{\"restaurants\":[");
+        for (int i = 0; i < 10; i++) {
+          body.append(i == 0 ? "" : ",").append("{\"restaurantId\":\"").append(i)
+              .append("\",\"name\":\"A2B\",\"city\":\"Hsr Layout\"}");
+        }
+        resp.getOutputStream().write(body.append("]}").toString()
+            .getBytes(StandardCharsets.UTF_8));
+      }
+    }));
+    return response;
+  }
+}
@@ -12,12 +12,18 @@ import static com.crio.qeats.controller.RestaurantController.CART_CLEAR_API;
 import static com.crio.qeats.controller.RestaurantController.CART_ITEM_API;
 import static com.crio.qeats.controller.RestaurantController.GET_ORDERS_API;
 import static com.crio.qeats.controller.RestaurantController.MENU_API;
+import static com.crio.qeats.controller.RestaurantController.NDJSON_VALUE;
 import static com.crio.qeats.controller.RestaurantController.POST_ORDER_API;
 import static com.crio.qeats.controller.RestaurantController.RESTAURANTS_API;
+import static com.crio.qeats.controller.RestaurantController.RESTAURANTS_STREAM_API;
 import static com.crio.qeats.controller.RestaurantController.RESTAURANT_API_ENDPOINT;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -30,17 +36,23 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.crio.qeats.QEatsApplication;
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.dto.RestaurantFields;
 import com.crio.qeats.exchanges.GetRestaurantsRequest;
 import com.crio.qeats.exchanges.GetRestaurantsResponse;
 import com.crio.qeats.services.RestaurantService;
 import com.crio.qeats.utils.FixtureHelpers;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import java.io.IOException;
 import java.net.URI;
 import java.time.LocalTime;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -48,16 +60,21 @@ import org.mockito.InjectMocks;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
 import org.springframework.web.util.UriComponentsBuilder;
 
 @SpringBootTest(classes = {QEatsApplication.class})
@@ -87,6 +104,9 @@ public class RestaurantControllerTest {
   @InjectMocks
   private RestaurantController restaurantController;
 
+  @Autowired
+  private RequestMappingHandlerAdapter handlerAdapter;
+
   @BeforeEach
   public void setup() {
     objectMapper = new ObjectMapper();
@@ -318,6 +338,132 @@ public class RestaurantControllerTest {
 
 
 
+  @Test
+  public void streamWritesOneRestaurantPerLine() throws Exception {
+    List<Restaurant> restaurants = loadSampleResponseList().getRestaurants();
+    ReflectionTestUtils.setField(restaurantController, "streamFlushEvery", 1);
+    ReflectionTestUtils.setField(restaurantController, "streamMaxRadiusInKms", 20.0);
+    doAnswer(invocation -> {
+      Consumer<Restaurant> consumer = invocation.getArgument(3);
+      restaurants.forEach(consumer);
+      return null;
+    }).when(restaurantService).streamRestaurantsCloseBy(any(GetRestaurantsRequest.class),
+        any(LocalTime.class), eq(10.0), any());
+
+    MockHttpServletResponse response = mvc.perform(
+        get(RESTAURANT_API_ENDPOINT + RESTAURANTS_STREAM_API
+            + "?latitude=20.21&longitude=30.31&radius=10")
+    ).andReturn().getResponse();
+
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    assertEquals(NDJSON_VALUE, response.getContentType().split(";")[0]);
+    String[] lines = response.getContentAsString().split("\n");
+    assertEquals(restaurants.size(), lines.length);
+    for (int i = 0; i < lines.length; i++) {
+      assertEquals(restaurants.get(i).getRestaurantId(),
+          objectMapper.readValue(lines[i], Restaurant.class).getRestaurantId());
+    }
+  }
+
+  @Test
+  public void onlyTheFieldsAskedForAreReturned() throws Exception {
+    when(restaurantService
+        .findAllRestaurantsCloseBy(any(GetRestaurantsRequest.class), any(LocalTime.class)))
+        .thenReturn(loadSampleResponseList());
+    MockMvc fieldsMvc = MockMvcBuilders.standaloneSetup(restaurantController)
+        .setMessageConverters(new MappingJackson2HttpMessageConverter(
+            RestaurantFields.configure(new ObjectMapper())))
+        .build();
+
+    MockHttpServletResponse response = fieldsMvc.perform(
+        get(RESTAURANT_API_URI + "?latitude=20.21&longitude=30.31&fields=name")
+    ).andReturn().getResponse();
+
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    JsonNode restaurants = objectMapper.readTree(response.getContentAsString())
+        .get("restaurants");
+    assertEquals(2, restaurants.get(0).size());
+    assertNotNull(restaurants.get(0).get("name"));
+    assertNotNull(restaurants.get(0).get("restaurantId"));
+  }
+
+  @Test
+  public void binaryFormatsAreServedOnRequestAndJsonOtherwise() throws Exception {
+    GetRestaurantsResponse sampleResponse = loadSampleResponseList();
+    when(restaurantService
+        .findAllRestaurantsCloseBy(any(GetRestaurantsRequest.class), any(LocalTime.class)))
+        .thenReturn(sampleResponse);
+    MockMvc negotiatingMvc = MockMvcBuilders.standaloneSetup(restaurantController)
+        .setMessageConverters(handlerAdapter.getMessageConverters()
+            .toArray(new HttpMessageConverter<?>[0]))
+        .build();
+    String uri = RESTAURANT_API_URI + "?latitude=20.21&longitude=30.31";
+
+    MockHttpServletResponse json = negotiatingMvc.perform(get(uri)).andReturn().getResponse();
+    MockHttpServletResponse smile = negotiatingMvc.perform(
+        get(uri).accept("application/x-jackson-smile")).andReturn().getResponse();
+    MockHttpServletResponse cbor = negotiatingMvc.perform(
+        get(uri).accept("application/cbor")).andReturn().getResponse();
+
+    assertTrue(json.getContentType().startsWith("application/json"));
+    assertTrue(smile.getContentType().startsWith("application/x-jackson-smile"));
+    assertTrue(cbor.getContentType().startsWith("application/cbor"));
+    List<Restaurant> expected = sampleResponse.getRestaurants();
+    assertEquals(expected, new ObjectMapper(new SmileFactory())
+        .readValue(smile.getContentAsByteArray(), GetRestaurantsResponse.class).getRestaurants());
+    assertEquals(expected, new ObjectMapper(new CBORFactory())
+        .readValue(cbor.getContentAsByteArray(), GetRestaurantsResponse.class).getRestaurants());
+    assertTrue(smile.getContentAsByteArray().length < json.getContentAsByteArray().length);
+  }
+
+  @Test
+  public void unknownFieldsResultInBadHttpRequest() throws Exception {
+    MockHttpServletResponse response = mvc.perform(
+        get(RESTAURANT_API_URI + "?latitude=20.21&longitude=30.31&fields=distance")
+    ).andReturn().getResponse();
+
+    assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+  }
+
+  @Test
+  public void streamRefusesRadiusAboveTheMaximum() throws Exception {
+    ReflectionTestUtils.setField(restaurantController, "streamMaxRadiusInKms", 20.0);
+
+    MockHttpServletResponse response = mvc.perform(
+        get(RESTAURANT_API_ENDPOINT + RESTAURANTS_STREAM_API
+            + "?latitude=20.21&longitude=30.31&radius=50")
+    ).andReturn().getResponse();
+
+    assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+    verify(restaurantService, times(0)).streamRestaurantsCloseBy(any(), any(), any(), any());
+  }
+
+  @Test
+  public void namesAreSanitizedWithoutModifyingTheRestaurantsFound() throws Exception {
+    GetRestaurantsResponse found = loadSampleResponseList();
+    Restaurant restaurant = found.getRestaurants().get(0);
+    restaurant.setName("Caf\u00e9");
+    when(restaurantService
+        .findAllRestaurantsCloseBy(any(GetRestaurantsRequest.class), any(LocalTime.class)))
+        .thenReturn(found);
+
+    MockHttpServletResponse response = mvc.perform(
+        get(RESTAURANT_API_URI + "?latitude=20.21&longitude=30.31")
+    ).andReturn().getResponse();
+
+    GetRestaurantsResponse returned = objectMapper
+        .readValue(response.getContentAsString(), GetRestaurantsResponse.class);
+    assertEquals("Caf?", returned.getRestaurants().get(0).getName());
+    assertEquals("Caf\u00e9", restaurant.getName());
+  }
+
+  @Test
+  public void refusesToStartWithoutAPositiveStreamFlushInterval() {
+    ReflectionTestUtils.setField(restaurantController, "streamFlushEvery", 0);
+
+    assertThrows(IllegalStateException.class, () -> restaurantController.init());
+  }
+
   private GetRestaurantsResponse loadSampleResponseList() throws IOException {
     String fixture =
         FixtureHelpers.fixture(FIXTURES + "/list_restaurant_response.json");
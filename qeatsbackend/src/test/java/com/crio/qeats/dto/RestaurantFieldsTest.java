@@ -0,0 +1,63 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.dto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class RestaurantFieldsTest {
+
+  private final Restaurant restaurant = new Restaurant("10", "A2B", "Hsr Layout",
+      "www.google.com", 20.027, 30.0, "18:00", "23:00", Arrays.asList("Tamil", "South Indian"));
+
+  @Test
+  void restaurantIdAlwaysComesAlongInACanonicalOrder() {
+    RestaurantFields fields = RestaurantFields.parse(" name , latitude");
+
+    assertFalse(fields.isAll());
+    assertEquals("latitude,name,restaurantId", fields.toString());
+    assertEquals(fields.toString(), RestaurantFields.parse("latitude,name").toString());
+  }
+
+  @Test
+  void noFieldsMeansAllOfThem() {
+    assertSame(RestaurantFields.ALL, RestaurantFields.parse(null));
+    assertSame(RestaurantFields.ALL, RestaurantFields.parse(""));
+    assertSame(RestaurantFields.ALL, RestaurantFields.parse(
+        "name,city,imageUrl,latitude,longitude,opensAt,closesAt,attributes"));
+  }
+
+  @Test
+  void unknownFieldsAreRefused() {
+    assertThrows(IllegalArgumentException.class, () -> RestaurantFields.parse("name,distance"));
+  }
+
+  @Test
+  void configuredMappersWriteTheFieldsAskedFor() throws Exception {
+    ObjectMapper mapper = RestaurantFields.configure(new ObjectMapper());
+
+    JsonNode some = mapper.readTree(mapper.writer(RestaurantFields.parse("name").filters())
+        .writeValueAsString(restaurant));
+    JsonNode all = mapper.readTree(mapper.writeValueAsString(restaurant));
+
+    assertEquals(2, some.size());
+    assertEquals("A2B", some.get("name").asText());
+    assertTrue(some.has("restaurantId"));
+    assertEquals(RestaurantFields.NAMES.size(), all.size());
+    // Mappers left alone are not affected.
+    assertEquals(all, new ObjectMapper().readTree(
+        new ObjectMapper().writeValueAsString(restaurant)));
+  }
+}
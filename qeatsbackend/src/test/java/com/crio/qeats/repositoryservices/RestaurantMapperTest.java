@@ -0,0 +1,64 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.models.RestaurantEntity;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+class RestaurantMapperTest {
+
+  @Test
+  void mapsLikeModelMapper() {
+    RestaurantEntity entity = entity("11");
+
+    assertEquals(new ModelMapper().map(entity, Restaurant.class),
+        RestaurantMapper.toRestaurant(entity));
+  }
+
+  @Test
+  void attributesAreCopied() {
+    RestaurantEntity entity = entity("11");
+
+    Restaurant restaurant = RestaurantMapper.toRestaurant(entity);
+    restaurant.getAttributes().add("Chinese");
+
+    assertNotSame(entity.getAttributes(), restaurant.getAttributes());
+    assertEquals(Arrays.asList("Tamil", "South Indian"), entity.getAttributes());
+  }
+
+  @Test
+  void listsKeepTheirOrder() {
+    List<Restaurant> restaurants =
+        RestaurantMapper.toRestaurants(Arrays.asList(entity("11"), entity("12")));
+
+    assertEquals("11", restaurants.get(0).getRestaurantId());
+    assertEquals("12", restaurants.get(1).getRestaurantId());
+  }
+
+  private static RestaurantEntity entity(String restaurantId) {
+    RestaurantEntity entity = new RestaurantEntity();
+    entity.setId("5c" + restaurantId);
+    entity.setRestaurantId(restaurantId);
+    entity.setName("A2B");
+    entity.setCity("Hsr Layout");
+    entity.setImageUrl("www.google.com");
+    entity.setLatitude(20.027);
+    entity.setLongitude(30.0);
+    entity.setOpensAt("18:00");
+    entity.setClosesAt("23:00");
+    entity.setAttributes(new ArrayList<>(Arrays.asList("Tamil", "South Indian")));
+    return entity;
+  }
+}
@@ -2,12 +2,22 @@ package com.crio.qeats.repositoryservices;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import ch.hsr.geohash.GeoHash;
 import com.crio.qeats.QEatsApplication;
+import com.crio.qeats.cache.CacheFillLock;
+import com.crio.qeats.cache.EarlyRefreshPolicy;
+import com.crio.qeats.cache.NearCache;
+import com.crio.qeats.cache.RestaurantCache;
 import com.crio.qeats.configs.RedisConfiguration;
 import com.crio.qeats.dto.Restaurant;
 import com.crio.qeats.models.RestaurantEntity;
@@ -18,6 +28,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.time.LocalTime;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.inject.Provider;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -27,6 +40,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
@@ -59,6 +73,15 @@ class RestaurantRepositoryServiceCacheTest {
   @MockBean
   private RestaurantRepository mockRestaurantRepository;
 
+  @SpyBean
+  private EarlyRefreshPolicy earlyRefreshPolicy;
+  @SpyBean
+  private CacheFillLock cacheFillLock;
+  @Autowired
+  private RestaurantCache restaurantCache;
+  @Autowired
+  private NearCache nearCache;
+
   @AfterEach
   void teardown() {
     redisConfiguration.destroyCache();
@@ -82,12 +105,58 @@ class RestaurantRepositoryServiceCacheTest {
     GeoHash geoHash = GeoHash.withCharacterPrecision(20.0, 30.0, 7);
 
     verify(mockRestaurantRepository, times(1)).findAll();
-    assertNotNull(jedis.get(geoHash.toBase32()));
+    assertNotNull(jedis.get(restaurantCache.cellKey(geoHash.toBase32())));
     assertEquals(2, allRestaurantsCloseBy.size());
     assertEquals("11", allRestaurantsCloseBy.get(0).getRestaurantId());
     assertEquals("12", allRestaurantsCloseBy.get(1).getRestaurantId());
   }
 
+  @Test
+  void missDuringRefreshThatLostTheFillLockComputesTheCell() throws Exception {
+    List<RestaurantEntity> entities = listOfRestaurants();
+    when(mockRestaurantRepository.findAll()).thenReturn(entities);
+    String cacheKey = GeoHash.withCharacterPrecision(20.0, 30.0, RestaurantCache.CELL_PRECISION)
+        .toBase32();
+
+    Jedis jedis = redisConfiguration.getJedisPool().getResource();
+    restaurantCache.putCell(jedis, cacheKey, RestaurantMapper.toRestaurants(entities), 10);
+    // Another instance is filling the cell.
+    assertNotNull(cacheFillLock.tryAcquire(jedis, cacheKey));
+
+    // Hold the refresh on its lock attempt until the miss is served.
+    CountDownLatch refreshStarted = new CountDownLatch(1);
+    CountDownLatch missServed = new CountDownLatch(1);
+    AtomicBoolean refreshing = new AtomicBoolean(true);
+    doAnswer(invocation -> {
+      if (refreshing.getAndSet(false)) {
+        refreshStarted.countDown();
+        missServed.await(5, TimeUnit.SECONDS);
+      }
+      return invocation.callRealMethod();
+    }).when(cacheFillLock).tryAcquire(any(), eq(cacheKey));
+    doReturn(true).when(earlyRefreshPolicy).shouldRefresh(any(), anyLong());
+
+    try {
+      // Served from Redis, refreshed in the background.
+      assertEquals(2, restaurantRepositoryService
+          .findAllRestaurantsCloseBy(20.0, 30.0, LocalTime.of(18, 1), 3.0).size());
+      assertTrue(refreshStarted.await(5, TimeUnit.SECONDS));
+
+      jedis.del(restaurantCache.cellKey(cacheKey));
+      nearCache.bumpGeneration();
+      List<Restaurant> allRestaurantsCloseBy = restaurantRepositoryService
+          .findAllRestaurantsCloseBy(20.0, 30.0, LocalTime.of(18, 1), 3.0);
+
+      assertEquals(2, allRestaurantsCloseBy.size());
+      assertEquals("11", allRestaurantsCloseBy.get(0).getRestaurantId());
+      assertEquals("12", allRestaurantsCloseBy.get(1).getRestaurantId());
+      verify(mockRestaurantRepository, times(1)).findAll();
+    } finally {
+      missServed.countDown();
+      jedis.close();
+    }
+  }
+
   private List<RestaurantEntity> listOfRestaurants() throws IOException {
     String fixture =
         FixtureHelpers.fixture(FIXTURES + "/initial_data_set_restaurants.json");
@@ -9,6 +9,7 @@ package com.crio.qeats.repositoryservices;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.times;
@@ -18,14 +19,17 @@ import static org.mockito.Mockito.when;
 import com.crio.qeats.QEatsApplication;
 import com.crio.qeats.configs.RedisConfiguration;
 import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.dto.RestaurantFields;
 import com.crio.qeats.models.RestaurantEntity;
 import com.crio.qeats.repositories.RestaurantRepository;
 import com.crio.qeats.utils.FixtureHelpers;
+import com.crio.qeats.utils.RequestContext;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import javax.inject.Provider;
@@ -119,6 +123,33 @@ public class RestaurantRepositoryServiceTest {
     assertEquals(0, allRestaurantsCloseBy.size());
   }
 
+  @Test
+  void streamedRestaurantsAreTheCloseByAndOpenOnes() {
+    List<String> streamedIds = new ArrayList<>();
+    restaurantRepositoryService.streamRestaurantsCloseBy(20.0, 30.0, LocalTime.of(18, 1), 3.0,
+        RestaurantFields.ALL, restaurant -> streamedIds.add(restaurant.getRestaurantId()));
+
+    // Read from Mongo, not through the repository.
+    verify(restaurantRepository, times(0)).findAll();
+    streamedIds.sort(null);
+    assertEquals(Arrays.asList("11", "12"), streamedIds);
+  }
+
+  @Test
+  void fieldsNotAskedForAreNotReadFromMongo() {
+    List<Restaurant> streamed = new ArrayList<>();
+    restaurantRepositoryService.streamRestaurantsCloseBy(20.0, 30.0, LocalTime.of(18, 1), 3.0,
+        RestaurantFields.parse("name"), streamed::add);
+
+    assertEquals(2, streamed.size());
+    for (Restaurant restaurant : streamed) {
+      assertNotNull(restaurant.getRestaurantId());
+      assertNotNull(restaurant.getName());
+      assertNull(restaurant.getCity());
+      assertNull(restaurant.getImageUrl());
+    }
+  }
+
   @Test
   void tooEarlyNoRestaurantIsOpen(@Autowired MongoTemplate mongoTemplate) {
     assertNotNull(mongoTemplate);
@@ -178,6 +209,26 @@ public class RestaurantRepositoryServiceTest {
 
 
 
+  @Test
+  void searchesOnlyReadTheFieldsAskedForFromMongo() {
+    RequestContext.begin(0);
+    try {
+      RequestContext.setFields(RestaurantFields.parse("name"));
+      List<Restaurant> foundRestaurantsList = restaurantRepositoryService
+          .findRestaurantsByName(20.8, 30.1, "A2B", LocalTime.of(20, 0), 5.0);
+
+      assertEquals(2, foundRestaurantsList.size());
+      for (Restaurant restaurant : foundRestaurantsList) {
+        assertNotNull(restaurant.getRestaurantId());
+        assertNotNull(restaurant.getName());
+        assertNull(restaurant.getCity());
+        assertNull(restaurant.getImageUrl());
+      }
+    } finally {
+      RequestContext.end();
+    }
+  }
+
   void searchedAttributesIsSubsetOfRetrievedRestaurantAttributes() {
   }
 
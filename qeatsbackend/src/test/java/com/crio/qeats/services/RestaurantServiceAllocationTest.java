@@ -0,0 +1,105 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.crio.qeats.QEatsApplication;
+import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.exchanges.GetRestaurantsRequest;
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.AllocationBudget;
+import com.crio.qeats.utils.FixtureHelpers;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.LocalTime;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Allocation budgets of the restaurants requests, on the fixture data set, from the service down
+ * to Mongo. Raise a budget only along with the change that needs it.
+ */
+@SpringBootTest(classes = {QEatsApplication.class})
+@DirtiesContext
+@ActiveProfiles("test")
+class RestaurantServiceAllocationTest {
+
+  private static final String FIXTURES = "fixtures/exchanges";
+
+  // About twice the 2 KB a warm cell takes. Parsing opening hours per restaurant again would
+  // take it over.
+  private static final long CLOSE_BY_BUDGET_BYTES = 4_096;
+
+  // Mostly the Mongo queries of the four sources: those of the request thread, plus the
+  // share of each batched lookup charged back from the qeats-batch thread that ran it, which
+  // is the whole lookup when the request is alone in its batch, as here. Querying a source
+  // twice would take it over.
+  private static final long SEARCH_BUDGET_BYTES = 350_000;
+
+  private static final LocalTime TIME_OF_SERVICE = LocalTime.of(18, 1);
+
+  @Autowired
+  private RestaurantService restaurantService;
+  @Autowired
+  private MongoTemplate mongoTemplate;
+  @Autowired
+  private RedisConfiguration redisConfiguration;
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @BeforeEach
+  void setup() throws IOException {
+    List<RestaurantEntity> restaurants = objectMapper.readValue(
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_restaurants.json"),
+        new TypeReference<List<RestaurantEntity>>() {
+        });
+    mongoTemplate.insert(restaurants, "restaurants");
+    List<MenuEntity> menus = objectMapper.readValue(
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_menus.json"),
+        new TypeReference<List<MenuEntity>>() {
+        });
+    mongoTemplate.insert(menus, "menus");
+  }
+
+  @AfterEach
+  void teardown() {
+    mongoTemplate.dropCollection("restaurants");
+    mongoTemplate.dropCollection("menus");
+    redisConfiguration.destroyCache();
+  }
+
+  @Test
+  void restaurantsCloseByStayWithinBudget() {
+    GetRestaurantsRequest request = new GetRestaurantsRequest(20.0, 30.0);
+    assertEquals(3, restaurantService.findAllRestaurantsCloseBy(request, TIME_OF_SERVICE)
+        .getRestaurants().size());
+
+    AllocationBudget.assertWithin("findAllRestaurantsCloseBy", CLOSE_BY_BUDGET_BYTES,
+        () -> restaurantService.findAllRestaurantsCloseBy(request, TIME_OF_SERVICE));
+  }
+
+  @Test
+  void searchStaysWithinBudget() {
+    GetRestaurantsRequest request = new GetRestaurantsRequest(20.0, 30.0);
+    request.setSearchFor("A2B");
+    assertEquals(3, restaurantService.findRestaurantsBySearchQuery(request, TIME_OF_SERVICE)
+        .getRestaurants().size());
+
+    AllocationBudget.assertWithin("findRestaurantsBySearchQuery", SEARCH_BUDGET_BYTES,
+        () -> restaurantService.findRestaurantsBySearchQuery(request, TIME_OF_SERVICE));
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class HeavyHittersTest {
+
+  @Test
+  void sketchNeverUndercounts() {
+    CountMinSketch sketch = new CountMinSketch(64, 4);
+    for (int i = 0; i < 1000; i++) {
+      sketch.add("key" + (i % 100));
+    }
+
+    for (int i = 0; i < 100; i++) {
+      assertTrue(sketch.estimate("key" + i) >= 10);
+    }
+  }
+
+  @Test
+  void hottestKeysAreKeptInOrder() {
+    HeavyHitters heavyHitters = new HeavyHitters(3, 1024, 4);
+    record(heavyHitters, "tdr1w", 50);
+    record(heavyHitters, "tdr1x", 30);
+    record(heavyHitters, "tdr1y", 20);
+    for (int i = 0; i < 200; i++) {
+      heavyHitters.record("cold" + i);
+    }
+    record(heavyHitters, "tdr1z", 40);
+
+    Map<String, Long> top = heavyHitters.top();
+
+    assertEquals(Arrays.asList("tdr1w", "tdr1z", "tdr1x"), new ArrayList<>(top.keySet()));
+  }
+
+  @Test
+  void decayHalvesCounts() {
+    HeavyHitters heavyHitters = new HeavyHitters(3, 1024, 4);
+    record(heavyHitters, "tdr1w", 40);
+
+    heavyHitters.decay();
+
+    assertEquals(Long.valueOf(20), heavyHitters.top().get("tdr1w"));
+  }
+
+  private static void record(HeavyHitters heavyHitters, String key, int times) {
+    for (int i = 0; i < times; i++) {
+      heavyHitters.record(key);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.QEatsApplication;
+import com.crio.qeats.cache.RedisCacheAccess;
+import com.crio.qeats.configs.RedisConfiguration;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@SpringBootTest(classes = {QEatsApplication.class})
+@DirtiesContext
+@ActiveProfiles("test")
+class HotKeyTrackerTest {
+
+  @Autowired
+  private RedisCacheAccess redisCacheAccess;
+  @Autowired
+  private RedisConfiguration redisConfiguration;
+
+  private HotKeyTracker first;
+  private HotKeyTracker second;
+
+  @BeforeEach
+  void setup() {
+    redisConfiguration.destroyCache();
+    first = newTracker();
+    second = newTracker();
+  }
+
+  @AfterEach
+  void teardown() {
+    first.shutdown();
+    second.shutdown();
+    redisConfiguration.destroyCache();
+  }
+
+  @Test
+  void instancesAddUpTheirHotKeys() {
+    record(first, 20.0, 30.0, 10);
+    record(second, 20.0, 30.0, 6);
+    record(second, 12.9, 77.6, 4);
+
+    first.persist();
+    second.persist();
+
+    Map<String, Long> persisted = first.loadPersisted(HotKeyTracker.CELLS, 10);
+    assertEquals(2, persisted.size());
+    assertEquals(Long.valueOf(16), persisted.values().iterator().next());
+    assertTrue(persisted.containsValue(4L));
+  }
+
+  @Test
+  void onlyWhatWasGainedSinceTheLastPersistIsAdded() {
+    record(first, 20.0, 30.0, 8);
+    first.persist();
+    allowDecay();
+    record(first, 20.0, 30.0, 2);
+
+    first.persist();
+
+    // 8 halved, plus 2: the 4 left locally after the first persist were counted already.
+    assertEquals(Long.valueOf(6),
+        first.loadPersisted(HotKeyTracker.CELLS, 10).values().iterator().next());
+  }
+
+  @Test
+  void keysThatCooledDownAgeOut() {
+    record(first, 20.0, 30.0, 4);
+    first.persist();
+
+    for (int i = 0; i < 3; i++) {
+      allowDecay();
+      second.persist();
+    }
+
+    assertTrue(first.loadPersisted(HotKeyTracker.CELLS, 10).isEmpty());
+  }
+
+  private HotKeyTracker newTracker() {
+    HotKeyTracker tracker = new HotKeyTracker();
+    ReflectionTestUtils.setField(tracker, "redisCacheAccess", redisCacheAccess);
+    ReflectionTestUtils.setField(tracker, "topK", 10);
+    ReflectionTestUtils.setField(tracker, "sketchWidth", 256);
+    ReflectionTestUtils.setField(tracker, "sketchDepth", 4);
+    ReflectionTestUtils.setField(tracker, "persistIntervalSeconds", 3600L);
+    tracker.init();
+    return tracker;
+  }
+
+  private static void record(HotKeyTracker tracker, double latitude, double longitude,
+      int times) {
+    for (int i = 0; i < times; i++) {
+      tracker.recordNearby(latitude, longitude);
+    }
+  }
+
+  // As if the persist interval had passed since the fleet-wide counts last decayed.
+  private void allowDecay() {
+    redisCacheAccess.run(jedis -> jedis.del(HotKeyTracker.DECAY_MARKER_PREFIX
+        + HotKeyTracker.CELLS));
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class JfrStageReportTest {
+
+  private Path recordingFile;
+
+  @BeforeEach
+  void setup() throws Exception {
+    recordingFile = Files.createTempFile("qeats", ".jfr");
+  }
+
+  @AfterEach
+  void teardown() throws Exception {
+    Files.deleteIfExists(recordingFile);
+  }
+
+  @Test
+  void stagesAreReportedLargestTotalFirst() throws Exception {
+    try (Recording recording = new Recording()) {
+      recording.enable(RepositoryCallEvent.class);
+      recording.enable(CacheOperationEvent.class);
+      recording.start();
+      for (int i = 0; i < 3; i++) {
+        RepositoryCallEvent call = new RepositoryCallEvent();
+        Thread.sleep(5);
+        call.finish("findRestaurantsByName", 28.0, 77.0, "biryani", 4);
+      }
+      new CacheOperationEvent().finish("near.get", "ttnfv2u", 0, 1);
+      recording.stop();
+      recording.dump(recordingFile);
+    }
+
+    List<JfrStageReport.StageStats> stages = JfrStageReport.summarize(recordingFile);
+
+    assertEquals(2, stages.size());
+    assertEquals("RepositoryCall", stages.get(0).getEvent());
+    assertEquals("findRestaurantsByName", stages.get(0).getStage());
+    assertEquals(3, stages.get(0).getCount());
+    assertTrue(stages.get(0).percentile(50) >= 5_000_000);
+    assertEquals("near.get", stages.get(1).getStage());
+    assertTrue(JfrStageReport.format(stages).contains("findRestaurantsByName"));
+  }
+
+  @Test
+  void eventsCarryTheAttributesOfTheirStage() throws Exception {
+    try (Recording recording = new Recording()) {
+      recording.enable(FilterEvent.class);
+      recording.start();
+      new FilterEvent().finish(28.0, 77.0, 12, 5);
+      recording.stop();
+      recording.dump(recordingFile);
+    }
+
+    List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+
+    assertEquals(1, events.size());
+    assertEquals("filter", events.get(0).getString("stage"));
+    assertEquals(12, events.get(0).getInt("candidateCount"));
+    assertEquals(5, events.get(0).getInt("resultCount"));
+    assertEquals(7, events.get(0).getString("geohash").length());
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.lang.reflect.Constructor;
+import org.bson.BsonDocument;
+import org.bson.ByteBuf;
+import org.bson.ByteBufNIO;
+import org.bson.RawBsonDocument;
+import org.junit.jupiter.api.Test;
+
+class MongoCommandMonitorTest {
+
+  @Test
+  void repliesAreMeasuredWithoutDecodingThem() throws Exception {
+    RawBsonDocument firstBatch = RawBsonDocument.parse("{cursor: {firstBatch: [{a: 1}, {a: 2},"
+        + " {a: 3}], id: {$numberLong: '0'}, ns: 'restaurant-database.restaurants'}, ok: 1.0}");
+
+    BsonDocument reply = asReceived(firstBatch);
+    assertEquals(3, MongoCommandMonitor.countReturned(reply));
+    assertEquals(firstBatch.getByteBuffer().remaining(), MongoCommandMonitor.sizeInBytes(reply));
+    assertEquals(1, MongoCommandMonitor.countReturned(asReceived(RawBsonDocument.parse(
+        "{cursor: {id: {$numberLong: '7'}, nextBatch: [{a: 1}]}, ok: 1.0}"))));
+    assertEquals(0, MongoCommandMonitor.countReturned(BsonDocument.parse("{n: 4, ok: 1.0}")));
+    // Decoded documents have no size left to read.
+    assertEquals(0, MongoCommandMonitor.sizeInBytes(BsonDocument.parse("{n: 4, ok: 1.0}")));
+  }
+
+  // Replies reach listeners as the driver's view over the bytes received.
+  private static BsonDocument asReceived(RawBsonDocument document) throws Exception {
+    Constructor<?> constructor = Class.forName(
+        "com.mongodb.internal.connection.ByteBufBsonDocument")
+        .getDeclaredConstructor(ByteBuf.class);
+    constructor.setAccessible(true);
+    return (BsonDocument) constructor.newInstance(
+        new ByteBufNIO(document.getByteBuffer().asNIO()));
+  }
+
+  @Test
+  void queriesDifferingByTheirValuesHaveTheSameShape() {
+    BsonDocument aRegex = BsonDocument.parse(
+        "{attributes: {$regex: 'tamil', $options: 'i'}, restaurantId: {$in: ['1', '2']}}");
+    BsonDocument anotherRegex = BsonDocument.parse(
+        "{attributes: {$regex: 'chinese', $options: 'i'}, restaurantId: {$in: ['3']}}");
+    BsonDocument aPattern = BsonDocument.parse("{name: /biryani/i}");
+
+    assertEquals(MongoCommandMonitor.shapeOf(aRegex), MongoCommandMonitor.shapeOf(anotherRegex));
+    assertNotEquals(MongoCommandMonitor.shapeOf(aRegex), MongoCommandMonitor.shapeOf(aPattern));
+    assertEquals(BsonDocument.parse("{name: {$regex: '?'}}"),
+        MongoCommandMonitor.shapeOf(aPattern));
+  }
+
+  @Test
+  void explainedCommandsLeaveOutWhatTheDriverAdds() {
+    BsonDocument command = BsonDocument.parse("{find: 'restaurants', filter: {name: 'A2B'},"
+        + " maxTimeMS: 50, $db: 'restaurant-database', lsid: {id: 1}}");
+
+    assertEquals(BsonDocument.parse("{find: 'restaurants', filter: {name: 'A2B'}}"),
+        MongoCommandMonitor.explainable(command));
+  }
+}
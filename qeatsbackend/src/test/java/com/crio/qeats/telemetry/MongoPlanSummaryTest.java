@@ -0,0 +1,52 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+
+class MongoPlanSummaryTest {
+
+  @Test
+  void collectionScansAreReported() {
+    MongoPlanSummary plan = MongoPlanSummary.of(BsonDocument.parse("{queryPlanner: {"
+        + "winningPlan: {stage: 'COLLSCAN', filter: {attributes: {$regex: 'tamil'}}}},"
+        + " executionStats: {nReturned: 3, executionTimeMillis: 41, totalKeysExamined: 0,"
+        + " totalDocsExamined: 20000}, ok: 1.0}"));
+
+    assertTrue(plan.isCollectionScan());
+    assertEquals(Collections.singletonList("COLLSCAN"), plan.getStages());
+    assertEquals(20000, plan.getDocsExamined());
+    assertEquals(3, plan.getReturned());
+  }
+
+  @Test
+  void plansOfAggregatesAreFoundInTheirFirstStage() {
+    MongoPlanSummary plan = MongoPlanSummary.of(BsonDocument.parse("{stages: [{$cursor: {"
+        + "queryPlanner: {winningPlan: {stage: 'FETCH', inputStage: {stage: 'IXSCAN',"
+        + " indexName: 'restaurantId_1'}}}, executionStats: {nReturned: 2,"
+        + " executionTimeMillis: 1, totalKeysExamined: 2, totalDocsExamined: 2}}},"
+        + " {$group: {_id: '$city'}}], ok: 1.0}"));
+
+    assertFalse(plan.isCollectionScan());
+    assertEquals(Arrays.asList("FETCH", "IXSCAN"), plan.getStages());
+    assertEquals(Collections.singletonList("restaurantId_1"), plan.getIndexes());
+    assertEquals(2, plan.getKeysExamined());
+  }
+
+  @Test
+  void explainsWithoutAPlanHaveNoSummary() {
+    assertNull(MongoPlanSummary.of(BsonDocument.parse("{ok: 0.0, errmsg: 'no such command'}")));
+  }
+}
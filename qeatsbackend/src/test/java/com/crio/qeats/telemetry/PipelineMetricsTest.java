@@ -0,0 +1,96 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.utils.RequestContext;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PipelineMetricsTest {
+
+  private SimpleMeterRegistry registry;
+
+  @BeforeEach
+  void setup() {
+    registry = new SimpleMeterRegistry();
+    Metrics.addRegistry(registry);
+  }
+
+  @AfterEach
+  void teardown() {
+    RequestContext.end();
+    Metrics.removeRegistry(registry);
+  }
+
+  @Test
+  void timingsAreTaggedAndAddToTheRequestSummary() {
+    RequestSummary summary = RequestSummary.start("search", 0);
+    RequestContext.begin(0, summary);
+
+    assertEquals("found", PipelineMetrics.timeMongo("restaurants.byName", () -> "found"));
+    PipelineMetrics.timeSearchSource("name", () -> null);
+    PipelineMetrics.recordStage("filter", 2_000_000);
+
+    assertEquals(1, registry.get(PipelineMetrics.MONGO).tag("query", "restaurants.byName")
+        .timer().count());
+    assertEquals(1, registry.get(PipelineMetrics.SEARCH_SOURCE).tag("source", "name")
+        .timer().count());
+    assertEquals(2.0, registry.get(PipelineMetrics.STAGE).tag("stage", "filter")
+        .timer().totalTime(TimeUnit.MILLISECONDS), 0.001);
+    assertNotNull(summary.toMessage().get("mongoMs"));
+    assertNotNull(summary.toMessage().get("nameSourceMs"));
+    assertEquals(String.format("%.3f", 2.0), summary.toMessage().get("filterMs"));
+  }
+
+  @Test
+  void cacheLookupsAreCountedByTypeAndResult() {
+    PipelineMetrics.recordCacheLookups("restaurant", 3, 1);
+    PipelineMetrics.recordCacheLookups("cell", 0, 1);
+
+    assertEquals(3.0, registry.get(PipelineMetrics.CACHE_LOOKUPS).tag("type", "restaurant")
+        .tag("result", "hit").counter().count());
+    assertEquals(1.0, registry.get(PipelineMetrics.CACHE_LOOKUPS).tag("type", "restaurant")
+        .tag("result", "miss").counter().count());
+    assertEquals(1.0, registry.get(PipelineMetrics.CACHE_LOOKUPS).tag("type", "cell")
+        .tag("result", "miss").counter().count());
+  }
+
+  @Test
+  void queueWaitIsTheTimeTasksSpendBehindOthers() throws Exception {
+    ExecutorService executor = PipelineMetrics.timeQueueWait(
+        Executors.newSingleThreadExecutor(), "test");
+    CountDownLatch release = new CountDownLatch(1);
+    executor.execute(() -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    executor.submit(() -> { });
+    Thread.sleep(50);
+    release.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+    assertEquals(2, registry.get(PipelineMetrics.EXECUTOR_QUEUE_WAIT).tag("name", "test")
+        .timer().count());
+    assertTrue(registry.get(PipelineMetrics.EXECUTOR_QUEUE_WAIT).tag("name", "test")
+        .timer().max(TimeUnit.MILLISECONDS) >= 50);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.telemetry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.utils.RequestContext;
+import java.util.concurrent.CompletableFuture;
+import org.apache.logging.log4j.message.StringMapMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class RequestSummaryTest {
+
+  @AfterEach
+  void teardown() {
+    RequestContext.end();
+  }
+
+  @Test
+  void oneEventCarriesTheWholeRequest() {
+    RequestSummary summary = RequestSummary.start("nearby", 0);
+    RequestContext.begin(0, summary);
+    RequestContext.summary().addScanned(40);
+    // Fan-out tasks record into the same summary.
+    CompletableFuture.supplyAsync(RequestContext.propagate(() -> {
+      RequestContext.summary().addScanned(2);
+      RequestContext.summary().addStageNanos("filter", 1_500_000);
+      return null;
+    })).join();
+    summary.addStageNanos("filter", 500_000);
+    summary.setCacheOutcome("redis");
+    summary.setReturned(3);
+
+    StringMapMessage message = summary.toMessage();
+    assertEquals("nearby", message.get("operation"));
+    assertEquals("42", message.get("scanned"));
+    assertEquals("3", message.get("returned"));
+    assertEquals("redis", message.get("cache"));
+    assertEquals(String.format("%.3f", 2.0), message.get("filterMs"));
+    assertNotNull(message.get("totalMs"));
+  }
+
+  @Test
+  void outsideRequestsNothingIsRecorded() {
+    RequestSummary summary = RequestContext.summary();
+    summary.addScanned(5);
+    summary.setReturned(1);
+
+    assertSame(RequestSummary.NONE, summary);
+    assertFalse(summary.isVerbose());
+    assertEquals("0", summary.toMessage().get("scanned"));
+    assertNull(summary.toMessage().get("returned"));
+  }
+
+  @Test
+  void sampledRequestsAreVerbose() {
+    assertTrue(RequestSummary.start("search", 1.0).isVerbose());
+    assertFalse(RequestSummary.start("search", 0.0).isVerbose());
+  }
+}
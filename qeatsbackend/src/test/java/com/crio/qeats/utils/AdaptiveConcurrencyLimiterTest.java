@@ -0,0 +1,115 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.utils.AdaptiveConcurrencyLimiter.Priority;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimiterTest {
+
+  @Test
+  void searchIsShedBeforeNearby() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 100, 0.5, 100);
+
+    assertTrue(limiter.tryAcquire(Priority.SEARCH));
+    assertTrue(limiter.tryAcquire(Priority.SEARCH));
+    assertFalse(limiter.tryAcquire(Priority.SEARCH));
+
+    assertTrue(limiter.tryAcquire(Priority.NEARBY));
+    assertTrue(limiter.tryAcquire(Priority.NEARBY));
+    assertFalse(limiter.tryAcquire(Priority.NEARBY));
+    assertEquals(4, limiter.getInFlight());
+  }
+
+  @Test
+  void limitShrinksWhenLatencyGrows() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(40, 4, 100, 0.5, 1000);
+    long fast = TimeUnit.MILLISECONDS.toNanos(10);
+    long slow = TimeUnit.MILLISECONDS.toNanos(100);
+
+    assertTrue(limiter.tryAcquire(Priority.NEARBY));
+    limiter.release(Priority.NEARBY, fast);
+    for (int i = 0; i < 20; i++) {
+      assertTrue(limiter.tryAcquire(Priority.NEARBY));
+      limiter.release(Priority.NEARBY, slow);
+    }
+
+    assertTrue(limiter.getLimit() < 40);
+    assertTrue(limiter.getLimit() >= 4);
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  void limitGrowsWhileSaturatedAndLatencyIsFlat() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 100, 0.5, 1000);
+    long rtt = TimeUnit.MILLISECONDS.toNanos(10);
+
+    for (int round = 0; round < 20; round++) {
+      int admitted = 0;
+      while (limiter.tryAcquire(Priority.NEARBY)) {
+        admitted++;
+      }
+      for (int i = 0; i < admitted; i++) {
+        limiter.release(Priority.NEARBY, rtt);
+      }
+    }
+
+    assertTrue(limiter.getLimit() > 4);
+  }
+
+  @Test
+  void searchesAreNotShedBelowSaturationByFasterNearbyTraffic() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(32, 4, 100, 0.5, 100);
+    long nearbyRtt = TimeUnit.MILLISECONDS.toNanos(1);
+    long searchRtt = TimeUnit.MILLISECONDS.toNanos(30);
+
+    int shedSearches = 0;
+    for (int round = 0; round < 200; round++) {
+      // 10 concurrent requests: 8 nearby and 2 searches.
+      for (int i = 0; i < 8; i++) {
+        assertTrue(limiter.tryAcquire(Priority.NEARBY));
+      }
+      int admittedSearches = 0;
+      for (int i = 0; i < 2; i++) {
+        if (limiter.tryAcquire(Priority.SEARCH)) {
+          admittedSearches++;
+        } else {
+          shedSearches++;
+        }
+      }
+      for (int i = 0; i < 8; i++) {
+        limiter.release(Priority.NEARBY, nearbyRtt);
+      }
+      for (int i = 0; i < admittedSearches; i++) {
+        limiter.release(Priority.SEARCH, searchRtt);
+      }
+    }
+
+    assertEquals(0, shedSearches);
+    assertEquals(32, limiter.getLimit());
+    assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  void searchShareOnlyCountsSearchesInFlight() {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 100, 0.5, 100);
+
+    for (int i = 0; i < 4; i++) {
+      assertTrue(limiter.tryAcquire(Priority.NEARBY));
+    }
+    for (int i = 0; i < 4; i++) {
+      assertTrue(limiter.tryAcquire(Priority.SEARCH));
+    }
+    assertFalse(limiter.tryAcquire(Priority.SEARCH));
+    assertFalse(limiter.tryAcquire(Priority.NEARBY));
+  }
+}
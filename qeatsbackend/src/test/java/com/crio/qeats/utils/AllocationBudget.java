@@ -0,0 +1,72 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.crio.qeats.telemetry.RequestSummary;
+import com.crio.qeats.telemetry.ThreadAllocation;
+import java.util.Arrays;
+
+/**
+ * Asserts that a call allocates no more than a budget, measured as requests are in production:
+ * by the thread making the call and the tasks it propagates its request context to.
+ *
+ * <p>Calls are warmed up first, so that the JIT has compiled them, and the median of the
+ * measured calls is compared, so that a stray class load or lazy initialization does not fail
+ * the build. Budgets are set with headroom over what the code allocates when they are raised;
+ * a change that allocates noticeably more per call fails them.
+ */
+public final class AllocationBudget {
+
+  private static final int WARMUP_CALLS = 200;
+  private static final int MEASURED_CALLS = 51;
+
+  private AllocationBudget() {
+  }
+
+  /**
+   * Fails unless the median call allocates at most the budget; skipped where the JVM does not
+   * count allocations.
+   *
+   * @param name what is measured, for the failure message
+   * @param budgetBytes bytes allowed per call
+   */
+  public static void assertWithin(String name, long budgetBytes, Runnable call) {
+    assumeTrue(ThreadAllocation.isSupported(), "No per-thread allocation counters");
+    long medianBytes = medianBytesPerCall(call);
+    assertTrue(medianBytes <= budgetBytes, () -> String.format(
+        "%s allocated %d bytes per call, over its budget of %d", name, medianBytes, budgetBytes));
+  }
+
+  /**
+   * Median heap allocated by one call, after warming it up.
+   */
+  public static long medianBytesPerCall(Runnable call) {
+    for (int i = 0; i < WARMUP_CALLS; i++) {
+      bytesAllocatedBy(call);
+    }
+    long[] bytes = new long[MEASURED_CALLS];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = bytesAllocatedBy(call);
+    }
+    Arrays.sort(bytes);
+    return bytes[bytes.length / 2];
+  }
+
+  private static long bytesAllocatedBy(Runnable call) {
+    RequestSummary summary = RequestSummary.start("budget", 0);
+    RequestContext.begin(0, summary);
+    try {
+      call.run();
+    } finally {
+      RequestContext.end();
+    }
+    return summary.getAllocatedBytes();
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.crio.qeats.telemetry.RequestSummary;
+import com.crio.qeats.telemetry.ThreadAllocation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchLoaderTest {
+
+  private final List<List<String>> queries = new CopyOnWriteArrayList<>();
+  private ScheduledExecutorService timer;
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setup() {
+    timer = Executors.newSingleThreadScheduledExecutor();
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @AfterEach
+  void teardown() {
+    RequestContext.end();
+    timer.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  @Test
+  void concurrentLoadsShareOneDeduplicatedQuery() throws Exception {
+    BatchLoader<String, String> loader = newLoader(200, 1000);
+    CountDownLatch start = new CountDownLatch(1);
+
+    Future<List<String>> first = executor.submit(() -> {
+      start.await();
+      return loader.load(Arrays.asList("10", "11"));
+    });
+    Future<List<String>> second = executor.submit(() -> {
+      start.await();
+      return loader.load(Arrays.asList("11", "12"));
+    });
+    start.countDown();
+
+    // Results come in the order of the batch query, which depends on who queued first.
+    assertEquals(Arrays.asList("10", "11"), sorted(first.get(5, TimeUnit.SECONDS)));
+    assertEquals(Arrays.asList("11", "12"), sorted(second.get(5, TimeUnit.SECONDS)));
+    assertEquals(1, queries.size());
+    assertEquals(Arrays.asList("10", "11", "12"), sorted(queries.get(0)));
+  }
+
+  @Test
+  void fullBatchIsQueriedWithoutWaitingForTheWindow() {
+    BatchLoader<String, String> loader = newLoader(60_000, 2);
+
+    assertEquals(Arrays.asList("10", "11"), loader.load(Arrays.asList("10", "11")));
+    assertEquals(1, queries.size());
+  }
+
+  @Test
+  void fullBatchIsQueriedOffTheCallersThread() {
+    List<Thread> queryThreads = new CopyOnWriteArrayList<>();
+    BatchLoader<String, String> loader = new BatchLoader<>(ids -> {
+      queryThreads.add(Thread.currentThread());
+      return ids;
+    }, Collections::singletonList, 60_000, 1, timer, executor);
+
+    assertEquals(Collections.singletonList("10"), loader.load(Arrays.asList("10")));
+    assertNotEquals(Thread.currentThread(), queryThreads.get(0));
+  }
+
+  @Test
+  void batchAllocationIsChargedToTheCallers() {
+    assumeTrue(ThreadAllocation.isSupported(), "No per-thread allocation counters");
+    BatchLoader<String, String> loader = new BatchLoader<>(ids -> {
+      List<String> results = new ArrayList<>(ids);
+      results.add(new String(new char[100_000]));
+      return results;
+    }, Collections::singletonList, 60_000, 1, timer, executor);
+    RequestSummary summary = RequestSummary.start("batch", 0);
+    RequestContext.begin(0, summary);
+
+    loader.load(Arrays.asList("10"));
+
+    assertTrue(summary.getAllocatedBytes() >= 100_000);
+  }
+
+  @Test
+  void failedBatchIsEmptyForCallersOutOfTime() throws InterruptedException {
+    BatchLoader<String, String> loader = new BatchLoader<>(ids -> {
+      throw new IllegalStateException("operation exceeded time limit");
+    }, Collections::singletonList, 60_000, 1, timer, executor);
+    RequestContext.begin(1);
+    Thread.sleep(10);
+
+    assertEquals(Collections.emptyList(), loader.load(Arrays.asList("10")));
+  }
+
+  @Test
+  void failedBatchFailsCallersWithTimeLeft() {
+    BatchLoader<String, String> loader = new BatchLoader<>(ids -> {
+      throw new IllegalStateException("mongo down");
+    }, Collections::singletonList, 60_000, 1, timer, executor);
+
+    assertThrows(IllegalStateException.class, () -> loader.load(Arrays.asList("10")));
+  }
+
+  @Test
+  void zeroWindowQueriesDirectly() {
+    BatchLoader<String, String> loader = newLoader(0, 256);
+
+    assertEquals(Collections.singletonList("10"), loader.load(Arrays.asList("10", "10")));
+    assertEquals(Collections.singletonList("10"), queries.get(0));
+  }
+
+  private BatchLoader<String, String> newLoader(long windowMillis, int maxBatchSize) {
+    return new BatchLoader<>(ids -> {
+      queries.add(ids);
+      return new ArrayList<>(ids);
+    }, Collections::singletonList, windowMillis, maxBatchSize, timer, executor);
+  }
+
+  private static List<String> sorted(List<String> ids) {
+    List<String> copy = new ArrayList<>(ids);
+    Collections.sort(copy);
+    return copy;
+  }
+
+  @Test
+  void callersStopWaitingWhenTheirRequestRunsOutOfTime() {
+    CountDownLatch release = new CountDownLatch(1);
+    BatchLoader<String, String> loader = new BatchLoader<>(keys -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return keys;
+    }, Collections::singletonList, 1, 1000, timer, executor);
+    RequestContext.begin(50);
+
+    long startNanos = System.nanoTime();
+    assertEquals(Collections.emptyList(), loader.load(Arrays.asList("10")));
+    assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(5));
+    release.countDown();
+  }
+}
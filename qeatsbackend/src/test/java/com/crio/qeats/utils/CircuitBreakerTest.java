@@ -0,0 +1,101 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+  private final AtomicLong clock = new AtomicLong();
+  private CircuitBreaker circuitBreaker;
+
+  @BeforeEach
+  void setup() {
+    circuitBreaker = new CircuitBreaker(3, 1000, clock::get);
+  }
+
+  @Test
+  void opensAfterConsecutiveFailuresOnly() {
+    circuitBreaker.onFailure();
+    circuitBreaker.onFailure();
+    circuitBreaker.onSuccess();
+    circuitBreaker.onFailure();
+    circuitBreaker.onFailure();
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    assertTrue(circuitBreaker.tryAcquire());
+
+    circuitBreaker.onFailure();
+
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    assertFalse(circuitBreaker.tryAcquire());
+  }
+
+  @Test
+  void letsOneProbeThroughAfterTheOpenPeriodAndClosesOnItsSuccess() {
+    open();
+    clock.addAndGet(999);
+    assertFalse(circuitBreaker.tryAcquire());
+
+    clock.addAndGet(1);
+    assertTrue(circuitBreaker.tryAcquire());
+    assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+    assertFalse(circuitBreaker.tryAcquire());
+
+    circuitBreaker.onSuccess();
+
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    assertTrue(circuitBreaker.tryAcquire());
+  }
+
+  @Test
+  void reopensWhenTheProbeFails() {
+    open();
+    clock.addAndGet(1000);
+    assertTrue(circuitBreaker.tryAcquire());
+
+    circuitBreaker.onFailure();
+
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    assertFalse(circuitBreaker.tryAcquire());
+    clock.addAndGet(1000);
+    assertTrue(circuitBreaker.tryAcquire());
+  }
+
+  @Test
+  void aProbeThatNeverReachedTheDependencyLetsTheNextCallProbe() {
+    open();
+    clock.addAndGet(1000);
+    assertTrue(circuitBreaker.tryAcquire());
+
+    circuitBreaker.onNotAttempted();
+
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    assertTrue(circuitBreaker.tryAcquire());
+  }
+
+  @Test
+  void callsThatNeverReachedTheDependencyDoNotCountAsFailures() {
+    for (int i = 0; i < 5; i++) {
+      assertTrue(circuitBreaker.tryAcquire());
+      circuitBreaker.onNotAttempted();
+    }
+
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+  }
+
+  private void open() {
+    for (int i = 0; i < 3; i++) {
+      circuitBreaker.onFailure();
+    }
+  }
+}
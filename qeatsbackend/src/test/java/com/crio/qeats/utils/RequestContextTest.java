@@ -0,0 +1,85 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.crio.qeats.telemetry.RequestSummary;
+import com.crio.qeats.telemetry.ThreadAllocation;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class RequestContextTest {
+
+  private static final int MEGABYTE = 1 << 20;
+
+  private volatile byte[] allocated;
+
+  @AfterEach
+  void teardown() {
+    RequestContext.end();
+  }
+
+  @Test
+  void noRequestMeansNoDeadline() {
+    assertNull(RequestContext.current());
+    assertFalse(RequestContext.isExpired());
+    assertEquals(Long.MAX_VALUE, RequestContext.remainingMillis());
+  }
+
+  @Test
+  void zeroTimeoutMeansNoDeadline() {
+    RequestContext.begin(0);
+
+    assertFalse(RequestContext.hasDeadline());
+    assertEquals(Long.MAX_VALUE, RequestContext.remainingMillis());
+  }
+
+  @Test
+  void deadlineExpires() throws InterruptedException {
+    RequestContext.begin(1);
+    Thread.sleep(5);
+
+    assertTrue(RequestContext.isExpired());
+    assertEquals(0, RequestContext.remainingMillis());
+  }
+
+  @Test
+  void deadlineIsPropagatedToOtherThreads() {
+    RequestContext.begin(60_000);
+
+    long remainingInTask = CompletableFuture
+        .supplyAsync(RequestContext.propagate(RequestContext::remainingMillis)).join();
+    boolean hasContextOutsideTask = CompletableFuture
+        .supplyAsync(RequestContext::hasDeadline).join();
+
+    assertTrue(remainingInTask > 0 && remainingInTask <= 60_000);
+    assertFalse(hasContextOutsideTask);
+  }
+
+  @Test
+  void allocationOfTheRequestsThreadsAddsToItsSummary() {
+    assumeTrue(ThreadAllocation.isSupported());
+    RequestSummary summary = RequestSummary.start("nearby", 0);
+    RequestContext.begin(0, summary);
+
+    allocated = new byte[MEGABYTE];
+    CompletableFuture.supplyAsync(RequestContext.propagate(() -> allocated = new byte[MEGABYTE]))
+        .join();
+    // Run inline, a propagated task is not counted twice.
+    RequestContext.propagate(() -> allocated = new byte[MEGABYTE]).get();
+    RequestContext.end();
+
+    assertTrue(summary.getAllocatedBytes() >= 3 * MEGABYTE);
+    assertTrue(summary.getAllocatedBytes() < 4 * MEGABYTE);
+  }
+}
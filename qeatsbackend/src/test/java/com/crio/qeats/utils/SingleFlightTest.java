@@ -0,0 +1,83 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTest {
+
+  @Test
+  void concurrentCallersShareOneComputation() throws Exception {
+    SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch loadStarted = new CountDownLatch(1);
+    CountDownLatch arrived = new CountDownLatch(8);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(() -> {
+          arrived.countDown();
+          return singleFlight.execute("tdr1w", () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            loadStarted.countDown();
+            await(release);
+            running.decrementAndGet();
+            return 7;
+          });
+        }));
+      }
+      assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+      assertTrue(arrived.await(5, TimeUnit.SECONDS));
+      // Callers that reached execute while the load is held share it instead of starting one.
+      assertEquals(1, singleFlight.inFlightCount());
+      assertEquals(1, running.get());
+      release.countDown();
+
+      for (Future<Integer> result : results) {
+        assertEquals(Integer.valueOf(7), result.get(5, TimeUnit.SECONDS));
+      }
+      // A caller scheduled after the load completed may start another, never a concurrent one.
+      assertEquals(1, maxRunning.get());
+      assertEquals(0, singleFlight.inFlightCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void failedComputationIsNotRemembered() {
+    SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+
+    assertThrows(IllegalStateException.class, () -> singleFlight.execute("tdr1w", () -> {
+      throw new IllegalStateException("mongo down");
+    }));
+    assertEquals(Integer.valueOf(1), singleFlight.execute("tdr1w", () -> 1));
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class TaskExecutorsTest {
+
+  @Test
+  void platformModeUsesNamedPoolThreads() throws Exception {
+    ExecutorService executor = TaskExecutors.newExecutor(TaskExecutors.MODE_PLATFORM, 2, "test");
+    try {
+      String threadName = executor.submit(() -> Thread.currentThread().getName()).get();
+      assertTrue(threadName.startsWith("test-"));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void virtualModeRunsTasksOnAnyJdk() throws Exception {
+    ExecutorService executor = TaskExecutors.newExecutor(TaskExecutors.MODE_VIRTUAL, 2, "test");
+    try {
+      assertEquals(Integer.valueOf(42), executor.submit(() -> 42).get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}